@@ -0,0 +1,89 @@
+package com.chatapp.yahoochatapp;
+
+import javafx.scene.image.Image;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Shared, size-bounded cache of profile pictures decoded at the size they are displayed at.
+ *
+ * Every bubble from the same sender gets the same {@link Image} instance. Images are decoded
+ * in the background, directly at the requested size, so a 30x30 chat avatar never holds a
+ * full-resolution photo in memory. The least recently used entries are evicted once the total
+ * pixel bytes exceed {@code chatapp.avatars.maxBytes} (8 MB by default).
+ */
+public class AvatarCache {
+
+    private static final long MAX_BYTES = Math.max(1, Long.getLong("chatapp.avatars.maxBytes", 8L * 1024 * 1024));
+
+    // ARGB, 4 bytes per pixel
+    private static final int BYTES_PER_PIXEL = 4;
+
+    private record Key(String username, int size) {
+    }
+
+    private record Entry(String path, Image image, long bytes) {
+    }
+
+    // Access-ordered, so iteration starts at the least recently used avatar
+    private static final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private static long totalBytes = 0;
+
+    /**
+     * Returns the avatar of {@code username} scaled to fit a {@code size} x {@code size} box,
+     * or {@code null} if the user has no picture.
+     */
+    public static synchronized Image get(String username, String path, double size) {
+        if (path == null || path.isEmpty()) {
+            return null;
+        }
+
+        Key key = new Key(username, (int) Math.ceil(size));
+        Entry entry = entries.get(key);
+        if (entry != null && entry.path().equals(path) && !entry.image().isError()) {
+            return entry.image();
+        }
+        if (entry != null) {
+            remove(key); // picture changed or failed to load
+        }
+
+        // preserveRatio + smooth, decoded on the JavaFX background loader
+        Image image = new Image(path, key.size(), key.size(), true, true, true);
+        long bytes = (long) key.size() * key.size() * BYTES_PER_PIXEL;
+        entries.put(key, new Entry(path, image, bytes));
+        totalBytes += bytes;
+        evictOverBudget(key);
+        return image;
+    }
+
+    /**
+     * Drops every cached size of a user's avatar, e.g. after they upload a new picture.
+     */
+    public static synchronized void invalidate(String username) {
+        entries.entrySet().removeIf(entry -> {
+            if (!Objects.equals(entry.getKey().username(), username)) return false;
+            totalBytes -= entry.getValue().bytes();
+            return true;
+        });
+    }
+
+    private static void remove(Key key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            totalBytes -= removed.bytes();
+        }
+    }
+
+    private static void evictOverBudget(Key keep) {
+        Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+        while (totalBytes > MAX_BYTES && it.hasNext()) {
+            Map.Entry<Key, Entry> eldest = it.next();
+            if (eldest.getKey().equals(keep)) continue; // never evict the image we are about to return
+            totalBytes -= eldest.getValue().bytes();
+            it.remove();
+        }
+    }
+}
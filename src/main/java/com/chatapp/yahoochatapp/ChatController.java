@@ -5,43 +5,40 @@ import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.geometry.Insets;
-import javafx.geometry.Pos;
+import javafx.geometry.Orientation;
 import javafx.scene.Node;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
-import javafx.scene.input.ContextMenuEvent;
 import javafx.scene.input.KeyCode;
 import javafx.scene.layout.HBox;
-import javafx.scene.layout.VBox;
-import javafx.scene.shape.Circle;
 import javafx.stage.Stage;
 import javafx.util.Duration;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.URL;
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 import javafx.scene.control.ListView;
 
 public class ChatController {
 
     @FXML
-    private ListView<Node> chatMessagesList;
+    private ListView<ChatMessage> chatMessagesList; // ✅ Rendered by recycled PublicMessageCells
 
     @FXML
-    private ListView<String> friendsList; // ✅ Added Friend List UI
+    private ListView<FriendEntry> friendsList; // ✅ Added Friend List UI
 
     @FXML
     private TextArea messageField;
@@ -52,6 +49,21 @@ public class ChatController {
     @FXML
     private Button addFriendButton; // ✅ Button to add friends
 
+    // ✅ The user's friend edges; the only source friendsList reads from
+    private FriendGraph friendGraph;
+
+    // ✅ Keyset pagination state for the public history (number of rows per loaded page, oldest first)
+    private final Deque<Integer> loadedPageSizes = new ArrayDeque<>();
+    private final MessageStore messageStore = new MessageStore(); // ✅ Loaded rows by id
+    private final Set<Integer> likesInFlight = new HashSet<>(); // ✅ Shown as liked, write not committed yet
+    private PublicHistoryPager.Cursor oldestLoaded;
+    private PublicHistoryPager.Cursor newestLoaded;
+    private boolean hasOlderPages = false;
+    private boolean hasNewerPages = false;
+    private boolean pageLoadInProgress = false;
+
+    // ✅ Frames pushed by the chat server; removed again when the window closes
+    private final Consumer<ChatFrame> pushListener = this::onPushFrame;
 
 
     @FXML
@@ -89,9 +101,11 @@ public class ChatController {
 
         ControllerManager.setChatController(this);
 
+        installMessageCells();
         loadChatHistory();
-        loadFriendList();
-        loadPendingRequests(); // ✅ Check for pending friend requests
+        installInfiniteScroll();
+        installFriendCells();
+        loadFriendList(); // ✅ Also reports pending friend requests
 
         addFriendButton.setOnAction(event -> promptAddFriend());
 
@@ -100,141 +114,157 @@ public class ChatController {
         // ✅ Handle double-click event on friend list to open private chat
         friendsList.setOnMouseClicked(event -> {
             if (event.getClickCount() == 2) { // Double-click detected
-                String selectedFriend = friendsList.getSelectionModel().getSelectedItem();
-                if (selectedFriend != null) {
-                    selectedFriend = selectedFriend.replace(" (New)", ""); // ✅ Remove notification tag if present
-                    if (!selectedFriend.contains("(Pending)") && !selectedFriend.contains("(Requested)")) {
-                        openPrivateChat(selectedFriend);
-                    }
+                FriendEntry selectedFriend = friendsList.getSelectionModel().getSelectedItem();
+                if (selectedFriend != null && selectedFriend.canChat()) { // ✅ No chat with pending requests
+                    openPrivateChat(selectedFriend);
                 }
             }
         });
 
-        // ✅ Automatically check for new messages and update notifications
-        startNotificationChecker();
+        // ✅ Real-time updates arrive from the chat server; polling is only a fallback while it is unreachable
+        ChatPushClient.addListener(pushListener);
+        updateFriendListNotifications();
     }
 
     /**
-     * ✅ Starts a background task to check for new messages and update the friend list.
+     * ✅ Follows the change log on the shared scheduler while the chat server is unreachable; stops when the window closes
      */
-    private void startNotificationChecker() {
-        Thread notificationThread = new Thread(() -> {
-            while (true) {
-                try {
-                    Thread.sleep(5000); // ✅ Check every 5 seconds
-                    Platform.runLater(this::updateFriendListNotifications); // ✅ Now supports 🔵 count
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
-            }
-        });
-        notificationThread.setDaemon(true);
-        notificationThread.start();
+    public void setStage(Stage stage) {
+        RefreshScheduler.schedule(stage, 5_000, this::applyEvents);
     }
 
     /**
-     * ✅ Updates the friend list to show an unread message notification for each friend
+     * ✅ Applies logged changes: only the affected bubbles, badges or friend rows are reloaded, each at most once
      */
-    private void updateFriendListNotifications() {
-        for (int i = 0; i < friendsList.getItems().size(); i++) {
-            String friend = friendsList.getItems().get(i);
-            String friendName = friend.replaceAll(" \\(New\\)| 🔵 \\(\\d+\\)", "").trim(); // ✅ Remove old notifications
-
-            int unreadCount = getUnreadMessageCount(friendName); // ✅ Fetch unread messages count
-
-            if (unreadCount > 0) {
-                friendsList.getItems().set(i, friendName + " 🔵 (" + unreadCount + ")");
-            } else {
-                friendsList.getItems().set(i, friendName); // ✅ Remove notification if no unread messages
+    private void applyEvents(List<ChatEvents.Event> events) {
+        String currentUser = SessionManager.getUser();
+        Set<Integer> newMessages = new LinkedHashSet<>();
+        Set<Integer> changedMessages = new LinkedHashSet<>();
+        boolean badgesChanged = false;
+        boolean friendsChanged = false;
+
+        for (ChatEvents.Event event : events) {
+            switch (event.type()) {
+                case ChatEvents.PUBLIC_MESSAGE -> {
+                    if (!currentUser.equals(event.actor())) newMessages.add(event.refId()); // ✅ Own bubble is already on screen
+                }
+                case ChatEvents.PUBLIC_EDITED, ChatEvents.PUBLIC_LIKED, ChatEvents.PUBLIC_COMMENTED -> {
+                    if (messageStore.contains(event.refId())) changedMessages.add(event.refId());
+                }
+                case ChatEvents.PUBLIC_DELETED -> {
+                    newMessages.remove(event.refId());
+                    changedMessages.remove(event.refId());
+                    removePublicMessage(event.refId());
+                }
+                case ChatEvents.READ_RECEIPT -> badgesChanged |= currentUser.equals(event.actor()); // ✅ Read in another window
+                case ChatEvents.FRIEND -> friendsChanged |= event.involves(currentUser);
+                default -> badgesChanged |= event.isPrivate() && event.involves(currentUser); // ✅ Own sends reorder the list too
             }
         }
+
+        changedMessages.forEach(this::reloadMessageBubble);
+        if (!newMessages.isEmpty()) {
+            PublicMessageRepository.loadMessages(List.copyOf(newMessages), currentUser)
+                    .thenAcceptAsync(data -> {
+                        for (PublicHistoryPager.PublicMessage message : data.page().messages()) {
+                            showPushedPublicMessage(message, data.snapshot());
+                        }
+                    }, DataAccess.FX)
+                    .exceptionally(DataAccess::logFailure);
+        }
+        if (badgesChanged) updateFriendListNotifications();
+        if (friendsChanged) loadFriendList();
     }
 
     /**
-     * ✅ Updates a specific friend's name in the list to show unread messages
+     * ✅ Stops listening for pushed updates once the chat window is closed
      */
-    public void updateFriendNotification(String receiver) {
-        Platform.runLater(() -> {
-            if (friendsList == null) {
-                System.err.println("Error: friendsList is not initialized!");
-                return;
-            }
-
-            for (int i = 0; i < friendsList.getItems().size(); i++) {
-                String friend = friendsList.getItems().get(i).trim();
-
-                if (friend.equals(receiver) || friend.startsWith(receiver)) {
-                    int unreadCount = getUnreadMessageCount(receiver); // ✅ Fetch updated count
-                    friendsList.getItems().set(i, receiver + " 🔵 (" + unreadCount + ")");
-                    System.out.println("Updated friend list: " + receiver + " has " + unreadCount + " unread messages.");
-                    return;
-                }
-            }
-        });
+    public void close() {
+        ChatPushClient.removeListener(pushListener);
     }
 
     /**
-     * ✅ Retrieves the number of unread messages for a specific friend
+     * ✅ Applies a frame pushed by the chat server (called on the connection thread)
      */
-    private int getUnreadMessageCount(String friendUsername) {
+    private void onPushFrame(ChatFrame frame) {
         String currentUser = SessionManager.getUser();
-        String query = "SELECT COUNT(*) FROM chat_messages WHERE sender = ? AND receiver = ? AND status = 'Delivered'";
 
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(query)) {
-            pstmt.setString(1, friendUsername); // Sender
-            pstmt.setString(2, currentUser); // Receiver
+        switch (frame.type()) {
+            case ChatFrame.CONNECTED -> {
+                RefreshScheduler.catchUp(); // ✅ Public messages, edits and likes missed while disconnected
+                Platform.runLater(() -> {
+                    loadFriendList(); // ✅ Catch up on anything missed while disconnected
+                    updateFriendListNotifications();
+                });
+            }
+            case ChatFrame.PUBLIC_MESSAGE -> {
+                PublicHistoryPager.PublicMessage message = new PublicHistoryPager.PublicMessage(
+                        frame.intField(0), frame.field(1), frame.field(2), new Timestamp(frame.longField(3)), frame.intField(4));
+                if (message.sender().equals(currentUser)) return; // ✅ Own bubble is already on screen
 
-            ResultSet rs = pstmt.executeQuery();
-            if (rs.next()) {
-                return rs.getInt(1); // ✅ Return count of unread messages
+                PublicMessageRepository.loadSnapshot(List.of(message), currentUser)
+                        .thenAcceptAsync(snapshot -> showPushedPublicMessage(message, snapshot), DataAccess.FX)
+                        .exceptionally(DataAccess::logFailure);
+            }
+            case ChatFrame.PUBLIC_DELETED -> Platform.runLater(() -> removePublicMessage(frame.intField(0)));
+            case ChatFrame.PRIVATE_MESSAGE -> {
+                if (frame.field(1).equals(currentUser) || frame.field(2).equals(currentUser)) {
+                    Platform.runLater(this::updateFriendListNotifications); // ✅ Moves the conversation to the top
+                }
+            }
+            case ChatFrame.FRIEND -> Platform.runLater(this::loadFriendList);
+            default -> {
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
         }
-
-        return 0; // Default to no unread messages
     }
 
-    /**
-     * ✅ Checks if there are unread messages from a friend.
-     */
-    private boolean hasUnreadMessages(String friendUsername) {
-        String query = "SELECT COUNT(*) FROM chat_messages WHERE sender = ? AND receiver = ? AND status != 'Seen'";
-
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(query)) {
+    private void removePublicMessage(int messageId) {
+        ChatMessage removed = messageStore.remove(messageId);
+        if (removed != null) {
+            chatMessagesList.getItems().remove(removed);
+        }
+    }
 
-            pstmt.setString(1, friendUsername);
-            pstmt.setString(2, SessionManager.getUser());
+    private void showPushedPublicMessage(PublicHistoryPager.PublicMessage message, InteractionSnapshot snapshot) {
+        if (messageStore.contains(message.id())) {
+            reloadMessageBubble(message.id()); // ✅ Edited message
+            return;
+        }
+        if (hasNewerPages) {
+            return; // ✅ Newest page is not loaded; it will be fetched when the user scrolls back down
+        }
 
-            ResultSet rs = pstmt.executeQuery();
-            if (rs.next()) {
-                return rs.getInt(1) > 0; // ✅ Returns true if there are unread messages
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
+        if (loadedPageSizes.isEmpty()) {
+            loadedPageSizes.addLast(0);
+            oldestLoaded = message.cursor();
         }
-        return false;
+        ChatMessage row = ChatMessage.from(message, snapshot);
+        chatMessagesList.getItems().add(row);
+        messageStore.put(row);
+        loadedPageSizes.addLast(loadedPageSizes.removeLast() + 1);
+        newestLoaded = message.cursor();
+        chatMessagesList.scrollTo(chatMessagesList.getItems().size() - 1);
+    }
+
+    /**
+     * ✅ Updates unread badges, previews and the recent-activity order of the friend list
+     */
+    private void updateFriendListNotifications() {
+        friendGraph.reloadSummaries() // ✅ One indexed query on conversation_summary, no message rows read
+                .exceptionally(DataAccess::logFailure); // ✅ Keep the last known counts if the query fails
     }
 
     /**
      * ✅ Opens a private chat window with the selected friend and removes the notification
      */
-    private void openPrivateChat(String friend) {
+    private void openPrivateChat(FriendEntry entry) {
+        String friend = entry.getName(); // ✅ The plain username; badges live on the entry, not in the name
         try {
-            friend = friend.replaceAll(" 🔵 \\(\\d+\\)", ""); // ✅ Remove notification count
-
             FXMLLoader loader = new FXMLLoader(getClass().getResource("/com/chatapp/yahoochatapp/private-chat-view.fxml"));
             Parent root = loader.load();
 
             PrivateChatController privateChatController = loader.getController();
-            privateChatController.setFriend(friend);
-
-            System.out.println("Calling loadPrivateChat() for: " + friend);
-            privateChatController.loadPrivateChat(friend); // ✅ Load chat messages
-
-            privateChatController.startChatAutoRefresh();  // ✅ Start real-time updates
+            privateChatController.setFriend(entry); // ✅ Loads the chat messages
 
             Stage chatStage = new Stage();
             chatStage.setTitle("Chat with " + friend);
@@ -242,6 +272,7 @@ public class ChatController {
             chatStage.show();
 
             privateChatController.setChatStage(chatStage); // ✅ Pass stage reference
+            privateChatController.startChatAutoRefresh();  // ✅ Needs the stage: polling stops when it closes
 
             // ✅ Remove notification when chat opens
             removeFriendNotification(friend);
@@ -256,14 +287,10 @@ public class ChatController {
      */
     private void removeFriendNotification(String friend) {
         Platform.runLater(() -> {
-            for (int i = 0; i < friendsList.getItems().size(); i++) {
-                String listItem = friendsList.getItems().get(i);
-
-                if (listItem.startsWith(friend)) {
-                    friendsList.getItems().set(i, friend); // ✅ Reset to default name (remove 🔵)
-                    markMessagesAsSeen(friend); // ✅ Mark all messages as "Seen" in DB
-                    return;
-                }
+            FriendEntry entry = friendGraph.entry(friend);
+            if (entry != null) {
+                friendGraph.markRead(friend); // ✅ Hides the 🔵 badge
+                markMessagesAsSeen(friend); // ✅ Mark all messages as "Seen" in DB
             }
         });
     }
@@ -272,76 +299,43 @@ public class ChatController {
      * ✅ Marks messages as "Seen" when chat is opened
      */
     private void markMessagesAsSeen(String sender) {
-        String currentUser = SessionManager.getUser();
-        String query = "UPDATE chat_messages SET status = 'Seen' WHERE sender = ? AND receiver = ? AND status = 'Delivered'";
-
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(query)) {
-            pstmt.setString(1, sender);
-            pstmt.setString(2, currentUser);
-            pstmt.executeUpdate();
-            System.out.println("Messages from " + sender + " marked as Seen.");
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+        PrivateMessageRepository.markConversationSeen(sender, SessionManager.getUser())
+                .thenRun(() -> {
+                    System.out.println("Messages from " + sender + " marked as Seen.");
+                    ChatPushClient.publish(ChatFrame.READ_RECEIPT, sender); // ✅ Tell the sender their messages were read
+                })
+                .exceptionally(DataAccess::logFailure);
     }
 
 
     /**
-     * ✅ Loads the user's friend list from the database and marks outgoing friend requests.
+     * ✅ Loads all of the user's friend edges in one query and marks outgoing friend requests.
      */
     private void loadFriendList() {
-        String currentUser = SessionManager.getUser();
-        String query = "SELECT user, friend, status FROM friends WHERE user = ? OR friend = ? ORDER BY friend";
-
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(query)) {
-
-            pstmt.setString(1, currentUser);
-            pstmt.setString(2, currentUser);
-            ResultSet rs = pstmt.executeQuery();
-
-            Set<String> uniqueFriends = new HashSet<>();
-            friendsList.getItems().clear(); // ✅ Clear old list
-
-            while (rs.next()) {
-                String user = rs.getString("user");
-                String friend = rs.getString("friend");
-                String status = rs.getString("status");
+        friendGraph.reload()
+                .thenRun(this::reportPendingRequests) // ✅ Unread badges are kept across reloads by the graph
+                .exceptionally(DataAccess::logFailure);
+    }
 
-                String displayName;
-                if (user.equals(currentUser)) {
-                    // ✅ If the logged-in user sent the request, show "Requested"
-                    displayName = isPendingRequest(currentUser, friend) ? friend + " (Requested)" : friend;
-                } else {
-                    // ✅ If the logged-in user received the request, show "Pending Request"
-                    displayName = isPendingRequest(user, currentUser) ? user + " (Pending Request)" : user;
-                }
+    /**
+     * ✅ Points friendsList at the friend graph and attaches the right-click menu to its cells
+     */
+    private void installFriendCells() {
+        friendGraph = new FriendGraph(SessionManager.getUser());
+        friendsList.setItems(friendGraph.getEntries());
 
-                if (!uniqueFriends.contains(displayName)) {
-                    uniqueFriends.add(displayName);
-                    friendsList.getItems().add(displayName);
-                }
+        FriendListCell.Actions actions = new FriendListCell.Actions() {
+            @Override
+            public void remove(FriendEntry friend) {
+                removeFriend(friend.getName());
             }
 
-            // ✅ Attach the context menu for right-click options
-            friendsList.setCellFactory(lv -> new ListCell<>() {
-                @Override
-                protected void updateItem(String friend, boolean empty) {
-                    super.updateItem(friend, empty);
-                    if (empty || friend == null) {
-                        setText(null);
-                        setContextMenu(null);
-                    } else {
-                        setText(friend);
-                        showFriendContextMenu(this, friend); // ✅ Attach context menu
-                    }
-                }
-            });
-
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+            @Override
+            public void accept(FriendEntry friend) {
+                acceptFriendRequest(friend.getName());
+            }
+        };
+        friendsList.setCellFactory(lv -> new FriendListCell(actions)); // ✅ Right-click menu lives in the cell
     }
 
 
@@ -357,8 +351,7 @@ public class ChatController {
 
         dialog.showAndWait().ifPresent(friendUsername -> {
             if (!friendUsername.trim().isEmpty() && !friendUsername.equals(SessionManager.getUser())) {
-                sendFriendRequest(friendUsername);
-                loadFriendList(); // ✅ Refresh list immediately after adding
+                sendFriendRequest(friendUsername); // ✅ Refreshes the list once the request is stored
             } else {
                 System.out.println("Invalid username.");
             }
@@ -369,77 +362,37 @@ public class ChatController {
      * ✅ Sends a friend request to another user and updates UI immediately.
      */
     private void sendFriendRequest(String friendUsername) {
-        String query = "INSERT INTO friends (user, friend, status) VALUES (?, ?, 'Pending')";
-
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(query)) {
-
-            pstmt.setString(1, SessionManager.getUser());
-            pstmt.setString(2, friendUsername);
-            pstmt.executeUpdate();
-
-            System.out.println("Friend request sent to " + friendUsername);
-            loadFriendList(); // ✅ Refresh UI immediately
-
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-    }
-
-    /**
-     * ✅ Adds a friend request to the database
-     */
-    private void addFriend(String friendUsername) {
-        String query = "INSERT INTO friends (user, friend, status) VALUES (?, ?, 'Pending')";
-
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(query)) {
-
-            pstmt.setString(1, SessionManager.getUser());
-            pstmt.setString(2, friendUsername);
-
-            int rowsInserted = pstmt.executeUpdate();
-
-            if (rowsInserted > 0) {
-                System.out.println("Friend request sent!");
-            } else {
-                System.out.println("Failed to send friend request.");
-            }
-
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+        friendGraph.sendRequest(friendUsername)
+                .thenAccept(sent -> {
+                    if (!sent) {
+                        System.out.println("Already friends with or waiting on " + friendUsername);
+                        return;
+                    }
+                    System.out.println("Friend request sent to " + friendUsername);
+                    ChatPushClient.publish(ChatFrame.FRIEND, friendUsername);
+                })
+                .exceptionally(DataAccess::logFailure);
     }
 
     /**
      * ✅ Removes a friend from the database
      */
     private void removeFriend(String friendUsername) {
-        String query = "DELETE FROM friends WHERE user = ? AND friend = ?";
-
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(query)) {
-
-            pstmt.setString(1, SessionManager.getUser());
-            pstmt.setString(2, friendUsername);
-
-            int rowsDeleted = pstmt.executeUpdate();
-
-            if (rowsDeleted > 0) {
-                System.out.println(friendUsername + " removed from friend list.");
-                loadFriendList(); // Refresh friend list
-            } else {
-                System.out.println("Failed to remove friend.");
-            }
-
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+        friendGraph.remove(friendUsername)
+                .thenAccept(removed -> {
+                    if (removed) {
+                        System.out.println(friendUsername + " removed from friend list.");
+                        ChatPushClient.publish(ChatFrame.FRIEND, friendUsername);
+                    } else {
+                        System.out.println("Failed to remove friend.");
+                    }
+                })
+                .exceptionally(DataAccess::logFailure);
     }
 
     @FXML
     private void handleRemoveFriend() {
-        String selectedFriend = friendsList.getSelectionModel().getSelectedItem();
+        FriendEntry selectedFriend = friendsList.getSelectionModel().getSelectedItem();
 
         if (selectedFriend == null) {
             showAlert("No Friend Selected", "Please select a friend to remove.");
@@ -449,16 +402,27 @@ public class ChatController {
         // Confirm before deleting
         Alert confirm = new Alert(Alert.AlertType.CONFIRMATION);
         confirm.setTitle("Confirm Removal");
-        confirm.setHeaderText("Are you sure you want to remove " + selectedFriend + "?");
+        confirm.setHeaderText("Are you sure you want to remove " + selectedFriend.getName() + "?");
         confirm.setContentText("This action cannot be undone.");
 
         confirm.showAndWait().ifPresent(response -> {
             if (response == ButtonType.OK) {
-                removeFriend(selectedFriend);
+                removeFriend(selectedFriend.getName());
             }
         });
     }
 
+    /**
+     * ✅ Non-blocking warning, safe to show from a background result callback
+     */
+    private void showNotification(String title, String content) {
+        Alert alert = new Alert(Alert.AlertType.WARNING);
+        alert.setTitle(title);
+        alert.setHeaderText(null);
+        alert.setContentText(content);
+        alert.show();
+    }
+
     private void showAlert(String title, String content) {
         Alert alert = new Alert(Alert.AlertType.WARNING);
         alert.setTitle(title);
@@ -477,44 +441,21 @@ public class ChatController {
         dialog.showAndWait().ifPresent(friend -> {
             if (!friend.trim().isEmpty()) {
                 addFriendToDatabase(friend);
-                loadFriendList(); // Refresh the list
             }
         });
     }
 
     private void addFriendToDatabase(String friendUsername) {
-        String checkQuery = "SELECT * FROM friends WHERE user = ? AND friend = ?";
-
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement checkStmt = conn.prepareStatement(checkQuery)) {
-
-            checkStmt.setString(1, SessionManager.getUser());
-            checkStmt.setString(2, friendUsername);
-            ResultSet rs = checkStmt.executeQuery();
-
-            if (rs.next()) {
-                System.out.println("Friend already exists: " + friendUsername);
-                return; // Stop execution if friend already exists
-            }
-
-            // If friend doesn't exist, insert them
-            String insertQuery = "INSERT INTO friends (user, friend, status) VALUES (?, ?, 'Accepted')";
-            try (PreparedStatement insertStmt = conn.prepareStatement(insertQuery)) {
-                insertStmt.setString(1, SessionManager.getUser());
-                insertStmt.setString(2, friendUsername);
-                int rowsInserted = insertStmt.executeUpdate();
-
-                if (rowsInserted > 0) {
-                    System.out.println("Friend added successfully: " + friendUsername);
-                    loadFriendList(); // Refresh the list
-                } else {
-                    System.out.println("Failed to add friend.");
-                }
-            }
-
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+        friendGraph.addFriend(friendUsername)
+                .thenAccept(added -> {
+                    if (added) {
+                        System.out.println("Friend added successfully: " + friendUsername);
+                        ChatPushClient.publish(ChatFrame.FRIEND, friendUsername);
+                    } else {
+                        System.out.println("Friend already exists: " + friendUsername);
+                    }
+                })
+                .exceptionally(DataAccess::logFailure);
     }
 
 
@@ -523,178 +464,258 @@ public class ChatController {
      * ✅ Accepts a pending friend request.
      */
     private void acceptFriendRequest(String requester) {
-        String currentUser = SessionManager.getUser();
-        String query = "UPDATE friends SET status = 'Accepted' WHERE user = ? AND friend = ? AND status = 'Pending'";
+        friendGraph.accept(requester)
+                .thenAccept(accepted -> {
+                    if (accepted) {
+                        System.out.println("Friend request from " + requester + " accepted.");
+                        ChatPushClient.publish(ChatFrame.FRIEND, requester);
+                    } else {
+                        System.out.println("Failed to accept friend request.");
+                    }
+                })
+                .exceptionally(DataAccess::logFailure);
+    }
 
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(query)) {
+    /**
+     * ✅ Reports pending friend requests for the logged-in user (already loaded with the friend list).
+     */
+    private void reportPendingRequests() {
+        for (String requester : friendGraph.namesWith(FriendGraph.Status.PENDING_REQUEST)) {
+            // Show notification or highlight the pending request
+            System.out.println("You have a pending friend request from " + requester);
+        }
+    }
 
-            pstmt.setString(1, requester);
-            pstmt.setString(2, currentUser);
-            int rowsUpdated = pstmt.executeUpdate();
+    /**
+     * Shows a typing indicator in the chat.
+     */
+    private void showTypingIndicator() {
+        ChatMessage typing = ChatMessage.typing("Bot is typing...");
+        chatMessagesList.getItems().add(typing);
 
-            if (rowsUpdated > 0) {
-                System.out.println("Friend request from " + requester + " accepted.");
-                loadFriendList(); // ✅ Refresh the friend list after accepting the request
-            } else {
-                System.out.println("Failed to accept friend request.");
-            }
+        // Auto-scroll to show typing indicator
+        chatMessagesList.scrollTo(chatMessagesList.getItems().size() - 1);
 
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+        // Schedule the removal after 1 second (before bot response)
+        PauseTransition delay = new PauseTransition(Duration.seconds(1));
+        delay.setOnFinished(event -> {
+            chatMessagesList.getItems().remove(typing);
+        });
+        delay.play();
     }
 
     /**
-     * ✅ Loads pending friend requests for the logged-in user.
+     * ✅ Cells build one bubble skin each and rebind it on scroll, so only visible rows cost nodes
      */
-    private void loadPendingRequests() {
-        String currentUser = SessionManager.getUser();
-        String query = "SELECT user FROM friends WHERE friend = ? AND status = 'Pending'";
-
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(query)) {
+    private void installMessageCells() {
+        PublicMessageCell.Actions actions = new PublicMessageCell.Actions() {
+            @Override
+            public void like(ChatMessage message) {
+                handleLike(message);
+            }
 
-            pstmt.setString(1, currentUser);
-            ResultSet rs = pstmt.executeQuery();
+            @Override
+            public void comment(ChatMessage message) {
+                promptComment(message);
+            }
 
-            while (rs.next()) {
-                String requester = rs.getString("user");
+            @Override
+            public void edit(ChatMessage message) {
+                editPublicMessage(message);
+            }
 
-                // Show notification or highlight the pending request
-                System.out.println("You have a pending friend request from " + requester);
+            @Override
+            public void delete(ChatMessage message) {
+                deletePublicMessage(message);
             }
+        };
+        chatMessagesList.setCellFactory(list -> new PublicMessageCell(actions));
 
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+        Label placeholderLabel = new Label("No messages yet...");
+        placeholderLabel.setStyle("-fx-font-size: 14px; -fx-text-fill: gray; -fx-padding: 20px;");
+        chatMessagesList.setPlaceholder(placeholderLabel);
     }
 
+
     /**
-     * ✅ Shows a right-click context menu for managing friends.
+     * ✅ Loads the newest page of the general (public) chat history and displays it.
      */
-    private void showFriendContextMenu(ListCell<String> cell, String friend) {
-        ContextMenu contextMenu = new ContextMenu();
-
-        MenuItem removeItem = new MenuItem("Remove Friend");
-        removeItem.setOnAction(event -> removeFriend(friend));
-
-        contextMenu.getItems().add(removeItem);
-
-        // ✅ If the friend request is pending, show an "Accept" option
-        if (friend.contains("(Pending Request)")) {
-            String requester = friend.replace(" (Pending Request)", ""); // Extract username
-            MenuItem acceptItem = new MenuItem("Accept Friend Request");
-            acceptItem.setOnAction(event -> acceptFriendRequest(requester));
-            contextMenu.getItems().add(acceptItem);
+    private void loadChatHistory() {
+        pageLoadInProgress = true;
+
+        // ✅ A freshly opened window shows the cached newest page right away; the database page replaces it
+        if (chatMessagesList.getItems().isEmpty()) {
+            PublicMessageRepository.loadCachedNewestPage(SessionManager.getUser())
+                    .thenAcceptAsync(cached -> {
+                        if (pageLoadInProgress && chatMessagesList.getItems().isEmpty() && !cached.isEmpty()) {
+                            List<ChatMessage> rows = new ArrayList<>(cached.size());
+                            for (PublicHistoryPager.PublicMessage message : cached) {
+                                rows.add(ChatMessage.cached(message)); // ✅ Read-only until the database page replaces it
+                            }
+                            chatMessagesList.getItems().setAll(rows);
+                            chatMessagesList.scrollTo(chatMessagesList.getItems().size() - 1);
+                        }
+                    }, DataAccess.FX)
+                    .exceptionally(DataAccess::logFailure);
+        }
+
+        PublicMessageRepository.loadNewestPage(SessionManager.getUser())
+                .thenAcceptAsync(this::showNewestPage, DataAccess.FX)
+                .whenCompleteAsync((ignored, error) -> pageLoadInProgress = false, DataAccess.FX)
+                .exceptionally(DataAccess::logFailure);
+    }
+
+    private void showNewestPage(PublicMessageRepository.PageData data) {
+        PublicHistoryPager.Page page = data.page();
+        List<ChatMessage> messages = toChatMessages(page.messages(), data.snapshot());
+
+        chatMessagesList.getItems().setAll(messages); // ✅ An empty list shows the "No messages yet..." placeholder
+        messageStore.clear();
+        messageStore.putAll(messages);
+        loadedPageSizes.clear();
+
+        if (messages.isEmpty()) {
+            oldestLoaded = null;
+            newestLoaded = null;
+            hasOlderPages = false;
+        } else {
+            loadedPageSizes.addLast(messages.size());
+            oldestLoaded = page.messages().get(0).cursor();
+            newestLoaded = page.messages().get(page.messages().size() - 1).cursor();
+            hasOlderPages = page.hasMore();
         }
+        hasNewerPages = false;
 
-        cell.setContextMenu(contextMenu);
+        chatMessagesList.scrollTo(chatMessagesList.getItems().size() - 1);
     }
 
     /**
-     * ✅ Checks if a friend request is still pending.
+     * ✅ View-models for one page of history
      */
-    private boolean isPendingRequest(String user, String friend) {
-        String query = "SELECT status FROM friends WHERE user = ? AND friend = ?";
-
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(query)) {
-
-            pstmt.setString(1, user);
-            pstmt.setString(2, friend);
-            ResultSet rs = pstmt.executeQuery();
-
-            if (rs.next()) {
-                return "Pending".equals(rs.getString("status")); // ✅ Return true if request is still pending
-            }
-
-        } catch (SQLException e) {
-            e.printStackTrace();
+    private List<ChatMessage> toChatMessages(List<PublicHistoryPager.PublicMessage> messages, InteractionSnapshot snapshot) {
+        List<ChatMessage> rows = new ArrayList<>(messages.size());
+        for (PublicHistoryPager.PublicMessage message : messages) {
+            rows.add(ChatMessage.from(message, snapshot));
         }
-        return false;
+        return rows;
     }
 
     /**
-     * Shows a typing indicator in the chat.
+     * ✅ Loads more history when the user scrolls near the top (or back down after older pages were trimmed)
      */
-    private void showTypingIndicator() {
-        Label typingLabel = new Label("Bot is typing...");
-        typingLabel.setStyle("-fx-font-size: 12px; -fx-text-fill: gray; -fx-padding: 5px;");
+    private void installInfiniteScroll() {
+        chatMessagesList.skinProperty().addListener((obs, oldSkin, newSkin) -> attachHistoryScrollListener());
+        attachHistoryScrollListener();
+    }
+
+    private void attachHistoryScrollListener() {
+        for (Node node : chatMessagesList.lookupAll(".scroll-bar")) {
+            if (node instanceof ScrollBar bar && bar.getOrientation() == Orientation.VERTICAL
+                    && !bar.getProperties().containsKey("historyScrollListener")) {
+                bar.getProperties().put("historyScrollListener", Boolean.TRUE);
+                bar.valueProperty().addListener((obs, oldValue, newValue) -> {
+                    double range = bar.getMax() - bar.getMin();
+                    if (range <= 0) return;
+
+                    if (newValue.doubleValue() <= bar.getMin() + range * 0.05) {
+                        loadOlderPage();
+                    } else if (newValue.doubleValue() >= bar.getMax() - range * 0.05) {
+                        loadNewerPage();
+                    }
+                });
+            }
+        }
+    }
 
-        HBox typingBox = new HBox(typingLabel);
-        typingBox.setAlignment(Pos.CENTER_LEFT);
-        typingBox.setPadding(new Insets(5, 50, 5, 10));
+    private void loadOlderPage() {
+        if (pageLoadInProgress || !hasOlderPages || oldestLoaded == null) return;
 
-        chatMessagesList.getItems().add(typingBox);
+        PublicHistoryPager.Cursor before = oldestLoaded;
+        pageLoadInProgress = true;
+        loadPageInBackground(PublicMessageRepository.loadOlderPage(before, SessionManager.getUser()), true);
+    }
 
-        // Auto-scroll to show typing indicator
-        chatMessagesList.scrollTo(chatMessagesList.getItems().size() - 1);
+    private void loadNewerPage() {
+        if (pageLoadInProgress || !hasNewerPages || newestLoaded == null) return;
 
-        // Schedule the removal after 1 second (before bot response)
-        PauseTransition delay = new PauseTransition(Duration.seconds(1));
-        delay.setOnFinished(event -> {
-            chatMessagesList.getItems().remove(typingBox);
-//            simulateBotResponse(); // Trigger the bot response after the delay
-        });
-        delay.play();
+        PublicHistoryPager.Cursor after = newestLoaded;
+        pageLoadInProgress = true;
+        loadPageInBackground(PublicMessageRepository.loadNewerPage(after, SessionManager.getUser()), false);
     }
 
-
     /**
-     * ✅ Loads only general (public) chat history from the database and displays it.
+     * ✅ Splices a page (and its interactions), fetched off the FX thread, into the list
      */
-    private void loadChatHistory() {
-        String query = "SELECT id, sender, content, timestamp FROM public_messages ORDER BY timestamp ASC";
+    private void loadPageInBackground(CompletableFuture<PublicMessageRepository.PageData> pageLoad, boolean older) {
+        pageLoad.thenAcceptAsync(data -> {
+                    List<ChatMessage> rows = toChatMessages(data.page().messages(), data.snapshot());
 
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(query);
-             ResultSet rs = pstmt.executeQuery()) {
+                    if (older) {
+                        prependPage(rows, data.page().hasMore());
+                    } else {
+                        appendPage(rows, data.page().hasMore());
+                    }
+                }, DataAccess.FX)
+                .whenCompleteAsync((ignored, error) -> pageLoadInProgress = false, DataAccess.FX)
+                .exceptionally(DataAccess::logFailure);
+    }
 
-            boolean hasMessages = false;
-            chatMessagesList.getItems().clear();
+    private void prependPage(List<ChatMessage> bubbles, boolean hasMore) {
+        hasOlderPages = hasMore;
+        if (bubbles.isEmpty()) return;
 
-            while (rs.next()) {
-                hasMessages = true;
+        chatMessagesList.getItems().addAll(0, bubbles);
+        messageStore.putAll(bubbles);
+        loadedPageSizes.addFirst(bubbles.size());
+        oldestLoaded = cursorOf(bubbles.get(0));
 
-                int messageId = rs.getInt("id");
-                String sender = rs.getString("sender");
-                String content = rs.getString("content");
-                String timestamp = rs.getTimestamp("timestamp").toLocalDateTime()
-                        .format(DateTimeFormatter.ofPattern("HH:mm"));
+        // ✅ Keep the number of pages in memory bounded by dropping the newest page
+        if (loadedPageSizes.size() > PublicHistoryPager.getMaxPages()) {
+            int size = chatMessagesList.getItems().size();
+            int dropped = Math.min(loadedPageSizes.removeLast(), size);
+            messageStore.removeAll(chatMessagesList.getItems().subList(size - dropped, size));
+            chatMessagesList.getItems().remove(size - dropped, size);
+            newestLoaded = lastLoadedCursor();
+            hasNewerPages = true;
+        }
 
-                HBox messageBox = createMessageUI(messageId, sender, content, timestamp, "", false);
-                chatMessagesList.getItems().add(messageBox);
-            }
+        chatMessagesList.scrollTo(bubbles.size()); // ✅ Stay on the message that was at the top
+    }
 
-            if (!hasMessages) {
-                Label placeholderLabel = new Label("No messages yet...");
-                placeholderLabel.setStyle("-fx-font-size: 14px; -fx-text-fill: gray; -fx-padding: 20px;");
-                chatMessagesList.getItems().add(new HBox(placeholderLabel));
-            }
+    private void appendPage(List<ChatMessage> bubbles, boolean hasMore) {
+        hasNewerPages = hasMore;
+        if (bubbles.isEmpty()) return;
 
-            chatMessagesList.scrollTo(chatMessagesList.getItems().size() - 1);
+        int previousLast = chatMessagesList.getItems().size() - 1;
+        chatMessagesList.getItems().addAll(bubbles);
+        messageStore.putAll(bubbles);
+        loadedPageSizes.addLast(bubbles.size());
+        newestLoaded = cursorOf(bubbles.get(bubbles.size() - 1));
 
-        } catch (SQLException e) {
-            e.printStackTrace();
+        // ✅ Same bound in the other direction: drop the oldest page
+        int dropped = 0;
+        if (loadedPageSizes.size() > PublicHistoryPager.getMaxPages()) {
+            dropped = Math.min(loadedPageSizes.removeFirst(), chatMessagesList.getItems().size());
+            messageStore.removeAll(chatMessagesList.getItems().subList(0, dropped));
+            chatMessagesList.getItems().remove(0, dropped);
+            oldestLoaded = cursorOf(chatMessagesList.getItems().get(0));
+            hasOlderPages = true;
         }
+
+        chatMessagesList.scrollTo(Math.max(0, previousLast - dropped));
     }
 
-    /**
-     * ✅ Marks a message as "Seen" in the database.
-     */
-    private void markMessageAsSeen(int messageId) {
-        String updateQuery = "UPDATE chat_messages SET status = 'Seen' WHERE id = ?";
-
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(updateQuery)) {
-            pstmt.setInt(1, messageId);
-            pstmt.executeUpdate();
-        } catch (SQLException e) {
-            e.printStackTrace();
+    private PublicHistoryPager.Cursor lastLoadedCursor() {
+        for (int i = chatMessagesList.getItems().size() - 1; i >= 0; i--) {
+            PublicHistoryPager.Cursor cursor = cursorOf(chatMessagesList.getItems().get(i));
+            if (cursor != null) return cursor;
         }
+        return null;
     }
 
+    private PublicHistoryPager.Cursor cursorOf(ChatMessage message) {
+        return message.cursor();
+    }
 
     @FXML
     private void handleSendMessage() {
@@ -704,17 +725,33 @@ public class ChatController {
             LocalDateTime now = LocalDateTime.now();
             DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm");
             String timestamp = now.format(formatter);
+            long clientId = MessageIds.next(); // ✅ Keys the message before it is stored; a retried insert reuses it
 
-            // Create message UI (Pass -1 as a placeholder for the message ID)
-            HBox messageBox = createMessageUI(-1, sender, message, timestamp, "Sent", true);
+            // ✅ If the newest page was trimmed while scrolling back, jump back to it once the message is stored
+            if (hasNewerPages) {
+                saveMessageToDatabase(clientId, sender, message, state -> { }).thenRunAsync(this::loadChatHistory, DataAccess.FX);
+                messageField.clear();
+                return;
+            }
 
-            chatMessagesList.getItems().add(messageBox);
+            // Show the message right away; it gets its id (and "Sent") once stored
+            ChatMessage pending = ChatMessage.pending(clientId, sender, message, timestamp, SessionManager.getProfilePicture());
+
+            chatMessagesList.getItems().add(pending);
+            if (!loadedPageSizes.isEmpty()) {
+                loadedPageSizes.addLast(loadedPageSizes.removeLast() + 1); // ✅ Counts toward the newest page
+            }
 
             // Auto-scroll to the latest message
             chatMessagesList.scrollTo(chatMessagesList.getItems().size() - 1);
 
-            // Save message to the database
-            saveMessageToDatabase(sender, message);
+            // Save message to the database; "Sent" only once the row is committed. Likes, comments and
+            // edits made before that wait for the row id instead of being refused.
+            pending.state().setStored(saveMessageToDatabase(clientId, sender, message, state -> showOutboxState(pending, state))
+                    .thenApplyAsync(messageId -> {
+                        showSendResult(pending, messageId);
+                        return messageId;
+                    }, DataAccess.FX));
 
             // Clear input field
             messageField.clear();
@@ -726,171 +763,47 @@ public class ChatController {
 
 
     /**
-     * ✅ Adds right-click menu for editing and deleting messages
+     * ✅ Shows the like immediately and stores it in the background. Extra clicks while the
+     * message is already liked (or the write is still running) are ignored, so there is at most
+     * one write per message; a failed write is rolled back on screen.
      */
-    private void addContextMenu(HBox messageBox, int messageId, String sender, String message, Label messageLabel) {
-        ContextMenu contextMenu = new ContextMenu();
-
-        // Edit Option
-        MenuItem editItem = new MenuItem("Edit");
-        editItem.setOnAction(event -> editMessage(sender, message, messageLabel));
-
-        // Delete Option
-        MenuItem deleteItem = new MenuItem("Delete");
-        deleteItem.setOnAction(event -> deleteMessage(messageId, messageBox));
-
-        contextMenu.getItems().addAll(editItem, deleteItem);
-
-        // ✅ Attach to message box
-        messageBox.setOnContextMenuRequested(event -> {
-            System.out.println("Right-click detected on message.");
-            contextMenu.show(messageBox, event.getScreenX(), event.getScreenY());
-        });
-    }
-
-    /**
-     * ✅ Creates the UI for each message and attaches the context menu
-     */
-    private HBox createMessageUI(int messageId, String sender, String message, String timestamp, String status, boolean allowEdit) {
-        // 🖼 Load profile image
-        ImageView profileView = new ImageView();
-        profileView.setFitWidth(30);
-        profileView.setFitHeight(30);
-        profileView.setPreserveRatio(true);
-
-        String imagePath = getUserProfileImagePath(sender);
-        if (imagePath != null && !imagePath.isEmpty()) {
-            profileView.setImage(new Image(imagePath));
-            // Make it circular
-            Circle clip = new Circle(15, 15, 15);
-            profileView.setClip(clip);
-        } else {
-            System.out.println("⚠️ No profile image found for user: " + sender);
-            profileView.setVisible(false);
-            profileView.setManaged(false);
-        }
-
-        // 👤 Sender label
-        Label senderLabel = new Label(sender + ":");
-        senderLabel.setStyle("-fx-font-weight: bold; -fx-text-fill: #333;");
-
-        // 🧩 Combine profile and sender name
-        HBox headerBox = new HBox(profileView, senderLabel);
-        headerBox.setSpacing(10);
-        headerBox.setAlignment(Pos.CENTER_LEFT);
-
-        // 💬 Message content
-        Label messageLabel = new Label(message);
-        messageLabel.setWrapText(true);
-        messageLabel.setMaxWidth(250);
-
-        // ⏰ Time label
-        Label timeLabel = new Label(timestamp);
-        timeLabel.setStyle("-fx-font-size: 10px; -fx-text-fill: gray;");
-
-        String currentUser = SessionManager.getUser();
-
-        // 👍 Like button + count (with styling if already liked)
-        Button likeBtn = new Button("👍");
-        if (hasUserLiked(messageId, currentUser)) {
-            likeBtn.setStyle("-fx-background-color: #cce5ff;"); // Light blue if liked
-        } else {
-            likeBtn.setStyle("-fx-background-color: transparent;");
-        }
-        likeBtn.setOnAction(e -> {
-            handleLike(messageId);
-            reloadMessageBubble(messageId); // refresh to update style and count
-        });
-
-        int likeCount = getLikeCount(messageId);
-        Label likeCountLabel = new Label(String.valueOf(likeCount));
-        VBox likeBox = new VBox(likeBtn, likeCountLabel);
-        likeBox.setAlignment(Pos.CENTER);
-
-        // 💬 Comment button + count
-        Button commentBtn = new Button("💬");
-        commentBtn.setOnAction(e -> promptComment(messageId));
-
-        int commentCount = getCommentCount(messageId);
-        Label commentCountLabel = new Label(String.valueOf(commentCount));
-        VBox commentBoxButton = new VBox(commentBtn, commentCountLabel);
-        commentBoxButton.setAlignment(Pos.CENTER);
-
-        HBox interactionBar = new HBox(likeBox, commentBoxButton);
-        interactionBar.setSpacing(10);
-
-        // 🗨️ Comments below message
-        List<Label> comments = getComments(messageId);
-        VBox commentBox = new VBox();
-        commentBox.setSpacing(3);
-        commentBox.setPadding(new Insets(5, 0, 0, 10));
-        if (!comments.isEmpty()) commentBox.getChildren().addAll(comments);
-
-        // 📦 Main message container
-        VBox messageContainer = new VBox(headerBox, messageLabel, timeLabel, interactionBar, commentBox);
-        messageContainer.setSpacing(5);
-
-        // 👥 Final message bubble
-        HBox messageBox = new HBox(messageContainer);
-        messageBox.setPadding(new Insets(5, 10, 5, 10));
-        messageBox.setAlignment(sender.equals(currentUser) ? Pos.CENTER_RIGHT : Pos.CENTER_LEFT);
-        messageBox.getProperties().put("messageId", messageId); // Store messageId
-
-        addPublicMessageContextMenu(messageBox, messageId, sender, messageLabel);
-
-        return messageBox;
-    }
-
-    private void handleLike(int messageId) {
-        String currentUser = SessionManager.getUser();
-
-        // ✅ Check if this user already liked this message
-        String checkQuery = "SELECT * FROM message_interactions WHERE message_id = ? AND user = ? AND type = 'like'";
-
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement checkStmt = conn.prepareStatement(checkQuery)) {
-
-            checkStmt.setInt(1, messageId);
-            checkStmt.setString(2, currentUser);
-            ResultSet rs = checkStmt.executeQuery();
-
-            if (rs.next()) {
-                // Already liked – prevent multiple likes
-                System.out.println("User already liked this message.");
-                return;
-            }
-
-            // ✅ Insert new like record
-            String insertQuery = "INSERT INTO message_interactions (message_id, user, type) VALUES (?, ?, 'like')";
-            try (PreparedStatement insertStmt = conn.prepareStatement(insertQuery)) {
-                insertStmt.setInt(1, messageId);
-                insertStmt.setString(2, currentUser);
-                insertStmt.executeUpdate();
-                System.out.println("Message liked successfully.");
-            }
-
-            // ✅ Refresh UI (reload chat messages)
-            loadChatHistory();
-
-        } catch (SQLException e) {
-            e.printStackTrace();
+    private void handleLike(ChatMessage message) {
+        if (message.id() <= 0) {
+            whenStored(message, () -> handleLike(message)); // ✅ Still being sent
+            return;
         }
+        int messageId = message.id();
+        MessageState state = message.state();
+        if (state.isLikedByViewer() || !likesInFlight.add(messageId)) return;
+
+        state.setLikedByViewer(true);
+        state.setLikeCount(state.getLikeCount() + 1);
+
+        PublicMessageRepository.like(messageId, SessionManager.getUser())
+                .whenCompleteAsync((liked, error) -> {
+                    likesInFlight.remove(messageId);
+
+                    if (error != null) {
+                        error.printStackTrace();
+                        state.setLikedByViewer(false);
+                        state.setLikeCount(Math.max(0, state.getLikeCount() - 1));
+                        showNotification("Like Failed", "Your like could not be saved. Please try again.");
+                    } else if (!liked) {
+                        // Already liked from another window – our +1 was counted twice
+                        System.out.println("User already liked this message.");
+                        reloadMessageBubble(messageId);
+                    } else {
+                        ChatPushClient.publish(ChatFrame.PUBLIC_MESSAGE, messageId);
+                    }
+                }, DataAccess.FX);
     }
 
-    private int getLikeCount(int messageId) {
-        String query = "SELECT COUNT(*) FROM message_interactions WHERE message_id = ? AND type = 'like'";
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(query)) {
-            pstmt.setInt(1, messageId);
-            ResultSet rs = pstmt.executeQuery();
-            if (rs.next()) return rs.getInt(1);
-        } catch (SQLException e) {
-            e.printStackTrace();
+    private void promptComment(ChatMessage message) {
+        if (message.id() <= 0) {
+            whenStored(message, () -> promptComment(message)); // ✅ Still being sent
+            return;
         }
-        return 0;
-    }
 
-    private void promptComment(int messageId) {
         TextInputDialog dialog = new TextInputDialog();
         dialog.setTitle("Add Comment");
         dialog.setHeaderText("Write your comment:");
@@ -898,388 +811,161 @@ public class ChatController {
 
         dialog.showAndWait().ifPresent(comment -> {
             if (!comment.trim().isEmpty()) {
-                saveComment(messageId, SessionManager.getUser(), comment);
-
-                // ✅ Fix: refresh safely on UI thread
-                Platform.runLater(() -> {
-                    reloadMessageBubble(messageId);
-                });
+                saveComment(message, SessionManager.getUser(), comment); // ✅ Shown right away, rolled back if the write fails
             }
         });
     }
 
     private void reloadMessageBubble(int messageId) {
-        // Find the message in the ListView
-        for (int i = 0; i < chatMessagesList.getItems().size(); i++) {
-            Node node = chatMessagesList.getItems().get(i);
-
-            if (node instanceof HBox) {
-                HBox messageBox = (HBox) node;
-
-                // Get the messageId stored in properties
-                Integer storedId = (Integer) messageBox.getProperties().get("messageId");
-                if (storedId != null && storedId == messageId) {
-
-                    // Preserve alignment (e.g., CENTER_RIGHT for current user)
-                    Pos oldAlignment = messageBox.getAlignment();
-
-                    // Create updated message bubble
-                    HBox updated = createMessageUI(
-                            messageId,
-                            getSenderByMessageId(messageId),
-                            getMessageById(messageId),
-                            getTimestampById(messageId),
-                            "Seen",
-                            true
-                    );
-
-                    // Restore original alignment
-                    updated.setAlignment(oldAlignment);
-
-                    // Store messageId again
-                    updated.getProperties().put("messageId", messageId);
-
-                    // Replace the message in the ListView
-                    chatMessagesList.getItems().set(i, updated);
-                    return;
-                }
-            }
-        }
+        PublicMessageRepository.loadBubble(messageId, SessionManager.getUser())
+                .thenAcceptAsync(data -> replaceMessageBubble(messageId, data), DataAccess.FX)
+                .exceptionally(DataAccess::logFailure);
     }
 
-    private String getSenderByMessageId(int messageId) {
-        String query = "SELECT sender FROM public_messages WHERE id = ?";
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(query)) {
+    private void replaceMessageBubble(int messageId, PublicMessageRepository.BubbleData data) {
+        MessageState state = messageStore.state(messageId);
+        if (state == null) return; // ✅ Scrolled out or deleted meanwhile
 
-            stmt.setInt(1, messageId);
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next()) {
-                return rs.getString("sender");
-            }
+        // ✅ Bound labels repaint in place; the row's time and pagination cursor stay as they are
+        state.setContent(data.content());
+        state.setVersion(data.version());
+        state.applyInteractions(data.snapshot());
 
-        } catch (SQLException e) {
-            e.printStackTrace();
+        // ✅ Keep an optimistic like that the loaded counters don't include yet
+        if (likesInFlight.contains(messageId) && !state.isLikedByViewer()) {
+            state.setLikedByViewer(true);
+            state.setLikeCount(state.getLikeCount() + 1);
         }
-        return "Unknown"; // fallback
     }
 
-    private String getMessageById(int messageId) {
-        String query = "SELECT content FROM public_messages WHERE id = ?";
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(query)) {
-            stmt.setInt(1, messageId);
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next()) {
-                return rs.getString("content");
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return "[Message not found]";
-    }
-
-    private String getTimestampById(int messageId) {
-        String query = "SELECT timestamp FROM chat_messages WHERE id = ?";
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(query)) {
-            pstmt.setInt(1, messageId);
-            ResultSet rs = pstmt.executeQuery();
-            if (rs.next()) return rs.getString("timestamp");
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return "";
-    }
-
-    private void saveComment(int messageId, String sender, String commentText) {
-        String query = "INSERT INTO message_interactions (message_id, user, type, comment_text) VALUES (?, ?, 'comment', ?)";
-
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(query)) {
-
-            pstmt.setInt(1, messageId);
-            pstmt.setString(2, sender);
-            pstmt.setString(3, commentText);
+    private void saveComment(ChatMessage message, String sender, String commentText) {
+        int messageId = message.id();
+        MessageState state = message.state();
+        InteractionSnapshot.Comment comment = new InteractionSnapshot.Comment(sender, commentText);
+        state.addComment(comment);
 
-            pstmt.executeUpdate();
-
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-    }
-
-    private List<Label> getComments(int messageId) {
-        List<Label> commentLabels = new ArrayList<>();
-        String query = "SELECT user, comment_text FROM message_interactions WHERE message_id = ? AND type = 'comment' ORDER BY timestamp ASC";
-
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(query)) {
-
-            pstmt.setInt(1, messageId);
-            ResultSet rs = pstmt.executeQuery();
-
-            while (rs.next()) {
-                String user = rs.getString("user");
-                String text = rs.getString("comment_text");
-
-                Label comment = new Label(user + ": " + text);
-                comment.setStyle("-fx-font-size: 12px; -fx-text-fill: #555;");
-                comment.setWrapText(true);
-                comment.setMaxWidth(220);
-                commentLabels.add(comment);
-            }
-
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-
-        return commentLabels;
-    }
-
-    private int getCommentCount(int messageId) {
-        String query = "SELECT COUNT(*) FROM message_interactions WHERE message_id = ? AND type = 'comment'";
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(query)) {
-
-            pstmt.setInt(1, messageId);
-            ResultSet rs = pstmt.executeQuery();
-            if (rs.next()) {
-                return rs.getInt(1);
-            }
-
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return 0;
-    }
-
-    private void addPublicMessageContextMenu(HBox messageBox, int messageId, String sender, Label messageLabel) {
-        // Only allow the logged-in user to edit/delete their own messages
-        if (!sender.equals(SessionManager.getUser())) return;
-
-        ContextMenu contextMenu = new ContextMenu();
-
-        // ✏️ Edit
-        MenuItem editItem = new MenuItem("Edit");
-        editItem.setOnAction(e -> {
-            TextInputDialog dialog = new TextInputDialog(messageLabel.getText());
-            dialog.setTitle("Edit Message");
-            dialog.setHeaderText("Edit your message:");
-            dialog.setContentText("Message:");
-
-            dialog.showAndWait().ifPresent(newText -> {
-                if (!newText.trim().isEmpty()) {
-                    messageLabel.setText(newText);
-                    updatePublicMessageInDatabase(messageId, newText);
-                }
-            });
-        });
-
-        // 🗑 Delete
-        MenuItem deleteItem = new MenuItem("Delete");
-        deleteItem.setOnAction(e -> {
-            deletePublicMessageFromDatabase(messageId);
-            chatMessagesList.getItems().remove(messageBox);
-        });
-
-        contextMenu.getItems().addAll(editItem, deleteItem);
-        messageBox.setOnContextMenuRequested(e -> contextMenu.show(messageBox, e.getScreenX(), e.getScreenY()));
-    }
-
-    private void updatePublicMessageInDatabase(int messageId, String newMessage) {
-        String sql = "UPDATE public_messages SET content = ? WHERE id = ?";
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, newMessage);
-            pstmt.setInt(2, messageId);
-            pstmt.executeUpdate();
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+        PublicMessageRepository.saveComment(messageId, sender, commentText)
+                .whenCompleteAsync((ignored, error) -> {
+                    if (error != null) {
+                        error.printStackTrace();
+                        state.removeComment(comment);
+                        showNotification("Comment Failed", "Your comment could not be saved. Please try again.");
+                        return;
+                    }
+                    if (!state.getComments().contains(comment)) {
+                        state.addComment(comment); // ✅ A reload that ran before the commit dropped it
+                    }
+                    ChatPushClient.publish(ChatFrame.PUBLIC_MESSAGE, messageId);
+                }, DataAccess.FX);
     }
 
-    private void deletePublicMessageFromDatabase(int messageId) {
-        String sql = "DELETE FROM public_messages WHERE id = ?";
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setInt(1, messageId);
-            pstmt.executeUpdate();
-        } catch (SQLException e) {
-            e.printStackTrace();
+    private void editPublicMessage(ChatMessage message) {
+        if (message.id() <= 0) {
+            whenStored(message, () -> editPublicMessage(message)); // ✅ Still being sent
+            return;
         }
-    }
-
 
-
-
-    /**
-     * ✅ Allows users to edit their message
-     */
-    private void editMessage(String sender, String oldMessage, Label messageLabel) {
-        TextInputDialog dialog = new TextInputDialog(oldMessage);
+        TextInputDialog dialog = new TextInputDialog(message.state().getContent());
         dialog.setTitle("Edit Message");
         dialog.setHeaderText("Edit your message:");
         dialog.setContentText("Message:");
 
-        dialog.showAndWait().ifPresent(newMessage -> {
-            if (!newMessage.trim().isEmpty()) {
-                updateMessageInDatabase(sender, oldMessage, newMessage);
-                messageLabel.setText(newMessage);
+        dialog.showAndWait().ifPresent(newText -> {
+            if (!newText.trim().isEmpty()) {
+                updatePublicMessageInDatabase(message, newText);
             }
         });
     }
 
     /**
-     * ✅ Deletes a message from the UI and database
+     * ✅ One primary-key update against the version the bubble shows; an edit from another window in between is reported, not overwritten
      */
-    private void deleteMessage(int messageId, HBox messageBox) {
-        deleteMessageFromDatabase(messageId); // Remove from DB first
-        chatMessagesList.getItems().remove(messageBox); // Remove from UI
+    private void updatePublicMessageInDatabase(ChatMessage message, String newMessage) {
+        int messageId = message.id();
+        MessageState state = message.state();
+        int expectedVersion = state.getVersion();
+        String oldMessage = state.getContent();
+        state.setContent(newMessage); // ✅ Shown right away
+
+        PublicMessageRepository.update(messageId, expectedVersion, newMessage)
+                .whenCompleteAsync((updated, error) -> {
+                    if (error != null) {
+                        error.printStackTrace();
+                        state.setContent(oldMessage);
+                        showNotification("Edit Failed", "Your change could not be saved. Please try again.");
+                    } else if (!updated) {
+                        showNotification("Edit Conflict", "This message was changed or deleted elsewhere. Showing the latest version.");
+                        reloadMessageBubble(messageId);
+                    } else {
+                        state.setVersion(expectedVersion + 1);
+                        ChatPushClient.publish(ChatFrame.PUBLIC_MESSAGE, messageId);
+                    }
+                }, DataAccess.FX);
     }
 
     /**
-     * ✅ Updates a message in the database
+     * ✅ Removed from the list once the compare-and-set delete has committed
      */
-    private void updateMessageInDatabase(String sender, String oldMessage, String newMessage) {
-        String query = "UPDATE chat_messages SET message = ? WHERE sender = ? AND message = ?";
-
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(query)) {
-            pstmt.setString(1, newMessage);
-            pstmt.setString(2, sender);
-            pstmt.setString(3, oldMessage);
-            pstmt.executeUpdate();
-        } catch (SQLException e) {
-            e.printStackTrace();
+    private void deletePublicMessage(ChatMessage message) {
+        if (message.id() <= 0) {
+            whenStored(message, () -> deletePublicMessage(message)); // ✅ Still being sent
+            return;
         }
-    }
+        int messageId = message.id();
 
+        PublicMessageRepository.delete(messageId, message.state().getVersion())
+                .thenAcceptAsync(deleted -> {
+                    if (deleted) {
+                        removePublicMessage(messageId);
+                        ChatPushClient.publish(ChatFrame.PUBLIC_MESSAGE, messageId); // ✅ Server pushes PUBLIC_DELETED
+                    } else {
+                        showNotification("Delete Conflict", "This message was changed elsewhere. Showing the latest version.");
+                        reloadMessageBubble(messageId);
+                    }
+                }, DataAccess.FX)
+                .exceptionally(DataAccess::logFailure);
+    }
 
     /**
-     * Saves a chat message to the database.
+     * ✅ Runs the action on the FX thread once a message that is still being sent has its row id; dropped if the send fails
      */
-    private void saveMessageToDatabase(String sender, String message) {
-        String query = "INSERT INTO public_messages (sender, content) VALUES (?, ?)";
-
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(query)) {
-
-            pstmt.setString(1, sender);
-            pstmt.setString(2, message);
-            pstmt.executeUpdate();
+    private void whenStored(ChatMessage message, Runnable action) {
+        CompletableFuture<Integer> stored = message.state().whenStored();
+        if (stored == null) return; // ✅ Never stored (typing indicator)
 
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+        stored.thenAcceptAsync(messageId -> {
+            if (messageId != null && messageId > 0) action.run();
+        }, DataAccess.FX);
     }
 
     /**
-     * ✅ Deletes a specific message from the database.
+     * Saves a chat message through the outbox, which journals it and keeps retrying while the database is unreachable
+     * (and pushes it to everyone else once stored). Completes with the new id, or {@code null} if the message was given up.
      */
-    private void deleteMessageFromDatabase(int messageId) {
-        String query = "DELETE FROM chat_messages WHERE id = ?";
-
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(query)) {
-            pstmt.setInt(1, messageId);
-            int rowsDeleted = pstmt.executeUpdate();
-
-            if (rowsDeleted > 0) {
-                System.out.println("Message deleted from database.");
-            } else {
-                System.out.println("Failed to delete message from database.");
-            }
-
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+    private CompletableFuture<Integer> saveMessageToDatabase(long clientId, String sender, String message,
+                                                             Consumer<Outbox.State> onState) {
+        return Outbox.sendPublic(clientId, sender, message, onState)
+                .exceptionally(DataAccess::logFailure);
     }
 
-    private String getUserProfileImagePath(String username) {
-        String query = "SELECT profile_picture FROM users WHERE username = ?";
-
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(query)) {
-
-            pstmt.setString(1, username);
-            ResultSet rs = pstmt.executeQuery();
-
-            if (rs.next()) {
-                return rs.getString("profile_picture"); // It’s a full URI like "file:/..."
-            }
-
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-
-        return null;
+    /**
+     * ✅ "Sending…" or "Waiting for connection…" while the outbox holds the message
+     */
+    private void showOutboxState(ChatMessage pending, Outbox.State outboxState) {
+        pending.state().setStatus(outboxState == Outbox.State.WAITING ? ChatMessage.STATUS_WAITING : ChatMessage.STATUS_SENDING);
     }
 
-    private boolean hasUserLiked(int messageId, String username) {
-        String query = "SELECT COUNT(*) FROM message_interactions WHERE message_id = ? AND user = ? AND type = 'like'";
-
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(query)) {
-
-            pstmt.setInt(1, messageId);
-            pstmt.setString(2, username);
-            ResultSet rs = pstmt.executeQuery();
-            if (rs.next()) {
-                return rs.getInt(1) > 0;
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
+    /**
+     * ✅ Flips the bubble's status once its batch insert has committed (or failed)
+     */
+    private void showSendResult(ChatMessage pending, Integer messageId) {
+        MessageState state = pending.state();
+        if (messageId != null && messageId > 0) {
+            state.setId(messageId);
+            state.setStatus(ChatMessage.STATUS_SENT);
+            messageStore.put(pending);
+        } else {
+            state.setStatus(ChatMessage.STATUS_FAILED);
         }
-
-        return false;
     }
-
-
-
-
-
-//    private void simulateBotResponse() {
-//        PauseTransition delay = new PauseTransition(Duration.seconds(1));
-//        delay.setOnFinished(event -> {
-//            // Get current timestamp
-//            LocalDateTime now = LocalDateTime.now();
-//            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm");
-//            String timestamp = now.format(formatter);
-//
-//            // Create bot message
-//            String botMessage = "Hi there! 😊";
-//            Label botLabel = new Label(botMessage);
-//            botLabel.setStyle("-fx-background-color: #E5E5EA; -fx-text-fill: black; -fx-padding: 10px; -fx-background-radius: 10;");
-//            botLabel.setWrapText(true);
-//            botLabel.setMaxWidth(250);
-//
-//            // Create timestamp label
-//            Label timeLabel = new Label(timestamp);
-//            timeLabel.setStyle("-fx-font-size: 10px; -fx-text-fill: gray;");
-//            timeLabel.setAlignment(Pos.BOTTOM_RIGHT);
-//
-//            // Place bot message and time in a VBox
-//            VBox botContainer = new VBox(botLabel, timeLabel);
-//            botContainer.setAlignment(Pos.BOTTOM_LEFT);
-//
-//            // Place VBox in HBox for alignment
-//            HBox botMessageBox = new HBox(botContainer);
-//            botMessageBox.setAlignment(Pos.CENTER_LEFT);
-//            botMessageBox.setPadding(new Insets(5, 50, 5, 10));
-//
-//            // Add bot response to ListView
-//            chatMessagesList.getItems().add(botMessageBox);
-//
-//            // ✅ Save bot message to database
-//            saveMessageToDatabase("Bot", botMessage);
-//
-//            // ✅ Auto-scroll to latest message
-//            chatMessagesList.scrollTo(chatMessagesList.getItems().size() - 1);
-//        });
-//        delay.play();
-//    }
-
-
-
 }
@@ -0,0 +1,236 @@
+package com.chatapp.yahoochatapp;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@code chat_events} change log.
+ *
+ * Writers call {@link #record} on the connection of their own transaction, so an event exists
+ * exactly when its change committed. Clients call {@link #poll} with nothing but their last seen
+ * event ids; an idle poll is a single short primary-key range probe. Actor and target are stored
+ * as user ids and handed out as names (see {@link UserDirectory}). Events older than
+ * {@code chatapp.events.retentionDays} (7 by default) are pruned by the chat server.
+ */
+public class ChatEvents {
+
+    public static final String PUBLIC_MESSAGE = "PUBLIC_MESSAGE";
+    public static final String PUBLIC_EDITED = "PUBLIC_EDITED";
+    public static final String PUBLIC_DELETED = "PUBLIC_DELETED";
+    public static final String PUBLIC_LIKED = "PUBLIC_LIKED";
+    public static final String PUBLIC_COMMENTED = "PUBLIC_COMMENTED";
+    public static final String PRIVATE_MESSAGE = "PRIVATE_MESSAGE";
+    public static final String PRIVATE_EDITED = "PRIVATE_EDITED";
+    public static final String PRIVATE_DELETED = "PRIVATE_DELETED";
+    public static final String READ_RECEIPT = "READ_RECEIPT";
+    public static final String FRIEND = "FRIEND";
+
+    private static final int PAGE_SIZE = 500;
+    private static final int MAX_PAGES_PER_POLL = 10;
+
+    static final String POLL = "SELECT id, type, ref_id, actor_id, target_id FROM chat_events WHERE id > ? ORDER BY id LIMIT " + PAGE_SIZE;
+    private static final long RETENTION_DAYS = Math.max(1, Long.getLong("chatapp.events.retentionDays", 7));
+    private static final int PRUNE_CHUNK = 10_000;
+    // Ids are taken at insert but become visible at commit, so a slow transaction can commit an id
+    // below one already seen; polls re-read the ids above where the log ended this long ago.
+    private static final long LOOKBACK_MILLIS = 2_000;
+
+    private static final String INSERT = "INSERT INTO chat_events (type, ref_id, actor_id, target_id) VALUES (?, ?, ?, ?)";
+
+    /**
+     * One change. {@code refId} is the message id (0 when the event is not about a message).
+     */
+    public record Event(long id, String type, int refId, String actor, String target) {
+
+        public boolean isPublic() {
+            return type.startsWith("PUBLIC_");
+        }
+
+        public boolean isPrivate() {
+            return type.startsWith("PRIVATE_");
+        }
+
+        /**
+         * Whether the event is between these two users, in either direction.
+         */
+        public boolean isBetween(String a, String b) {
+            return (a.equals(actor) && b.equals(target)) || (b.equals(actor) && a.equals(target));
+        }
+
+        public boolean involves(String user) {
+            return user.equals(actor) || user.equals(target);
+        }
+    }
+
+    // A row as stored, before its user ids are turned into names
+    private record StoredEvent(long id, String type, int refId, int actorId, int targetId) {
+    }
+
+    private record Watermark(long polledAt, long lastSeenId) {
+    }
+
+    private static long lastSeenId = -1; // -1 until the first poll fixes the starting point
+    private static Watermark floor;                                        // newest watermark older than the look-back
+    private static final Deque<Watermark> watermarks = new ArrayDeque<>(); // the ones after it
+    private static final NavigableSet<Long> seenIds = new TreeSet<>();     // ids above the oldest watermark
+    private static ScheduledExecutorService pruner;
+
+    /**
+     * Appends one event on {@code conn}; call it inside the transaction that made the change.
+     */
+    public static void record(Connection conn, String type, int refId, String actor, String target) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(INSERT)) {
+            bind(pstmt, type, refId, UserDirectory.requireIdOf(conn, actor),
+                    target == null ? 0 : UserDirectory.requireIdOf(conn, target));
+            pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Appends the events selected by {@code select}, which must return (type, ref_id, actor_id, target_id);
+     * for changes whose actor or target are columns of the changed row.
+     */
+    public static int recordSelected(Connection conn, String select, Object... params) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("INSERT INTO chat_events (type, ref_id, actor_id, target_id) " + select)) {
+            for (int i = 0; i < params.length; i++) {
+                pstmt.setObject(i + 1, params[i]);
+            }
+            return pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * One event per message id, written as a single batch (for the write-behind message inserts).
+     */
+    public static void recordAll(Connection conn, String type, List<Integer> refIds, List<String> actors, List<String> targets)
+            throws SQLException {
+        List<Integer> actorIds = UserDirectory.idsOf(conn, actors);
+        List<Integer> targetIds = targets == null ? null : UserDirectory.idsOf(conn, targets);
+        try (PreparedStatement pstmt = conn.prepareStatement(INSERT)) {
+            for (int i = 0; i < refIds.size(); i++) {
+                bind(pstmt, type, refIds.get(i), actorIds.get(i), targetIds == null ? 0 : targetIds.get(i));
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
+    }
+
+    /**
+     * Events committed since the previous call, oldest first, each returned once even when it
+     * committed after events with higher ids. The first call only records where the log currently
+     * ends, since a freshly opened window has just loaded everything before it.
+     */
+    public static synchronized List<Event> poll() throws SQLException {
+        List<Event> events = new ArrayList<>();
+        long now = System.currentTimeMillis();
+
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            if (lastSeenId < 0) {
+                try (Statement stmt = conn.createStatement();
+                     ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(id), 0) FROM chat_events")) {
+                    rs.next();
+                    lastSeenId = rs.getLong(1);
+                }
+                floor = new Watermark(now, lastSeenId);
+                return events;
+            }
+
+            while (!watermarks.isEmpty() && now - watermarks.getFirst().polledAt() >= LOOKBACK_MILLIS) {
+                floor = watermarks.removeFirst();
+            }
+            long cursor = floor.lastSeenId();
+            seenIds.headSet(cursor, true).clear(); // everything at or below the floor is never re-read
+
+            List<StoredEvent> rows = new ArrayList<>();
+            try (PreparedStatement pstmt = conn.prepareStatement(POLL)) {
+                // A client that was on pushes for a while catches up in pages
+                for (int page = 0; page < MAX_PAGES_PER_POLL; page++) {
+                    pstmt.setLong(1, cursor);
+                    int read = 0;
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        while (rs.next()) {
+                            StoredEvent row = new StoredEvent(rs.getLong("id"), rs.getString("type"), rs.getInt("ref_id"),
+                                    rs.getInt("actor_id"), rs.getInt("target_id"));
+                            cursor = row.id();
+                            read++;
+                            if (seenIds.add(row.id())) {
+                                rows.add(row); // not returned by an earlier poll
+                            }
+                        }
+                    }
+                    if (read < PAGE_SIZE) break;
+                }
+            }
+            lastSeenId = Math.max(lastSeenId, cursor);
+            watermarks.add(new Watermark(now, lastSeenId));
+
+            List<Integer> userIds = new ArrayList<>();
+            for (StoredEvent row : rows) {
+                userIds.add(row.actorId());
+                userIds.add(row.targetId());
+            }
+            Map<Integer, String> names = UserDirectory.namesOf(conn, userIds); // one lookup for the whole batch
+            for (StoredEvent row : rows) {
+                events.add(new Event(row.id(), row.type(), row.refId(), names.get(row.actorId()), names.get(row.targetId())));
+            }
+        }
+        return events;
+    }
+
+    /**
+     * Deletes events past the retention period once an hour; run by the chat server only.
+     */
+    public static synchronized void startPruning() {
+        if (pruner != null) return;
+
+        pruner = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "chat-events-pruner");
+            thread.setDaemon(true);
+            return thread;
+        });
+        pruner.scheduleWithFixedDelay(ChatEvents::pruneSafely, 1, 60, TimeUnit.MINUTES);
+    }
+
+    private static void pruneSafely() {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(
+                     "DELETE FROM chat_events WHERE created_at < NOW() - INTERVAL ? DAY LIMIT " + PRUNE_CHUNK)) {
+            pstmt.setLong(1, RETENTION_DAYS);
+            int pruned;
+            do {
+                pruned = pstmt.executeUpdate(); // small chunks keep the lock time short
+            } while (pruned == PRUNE_CHUNK);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static void bind(PreparedStatement pstmt, String type, int refId, int actorId, int targetId) throws SQLException {
+        pstmt.setString(1, type);
+        setIdOrNull(pstmt, 2, refId);
+        pstmt.setInt(3, actorId);
+        setIdOrNull(pstmt, 4, targetId);
+    }
+
+    private static void setIdOrNull(PreparedStatement pstmt, int index, int id) throws SQLException {
+        if (id > 0) {
+            pstmt.setInt(index, id);
+        } else {
+            pstmt.setNull(index, Types.INTEGER);
+        }
+    }
+}
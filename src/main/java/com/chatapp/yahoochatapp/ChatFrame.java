@@ -0,0 +1,84 @@
+package com.chatapp.yahoochatapp;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * One line of the push protocol spoken between {@link ChatPushClient} and the chat server.
+ *
+ * A frame is its type followed by tab-separated fields, terminated by a newline. Fields are
+ * Base64 encoded so message text can contain tabs and newlines.
+ */
+public record ChatFrame(String type, List<String> fields) {
+
+    // Client -> server; HELLO carries the push token from PushSessions
+    public static final String HELLO = "HELLO";
+    public static final String PING = "PING";
+
+    // Both directions: clients announce a change by id, the server pushes the stored row
+    public static final String PUBLIC_MESSAGE = "PUBLIC_MESSAGE";
+    public static final String PRIVATE_MESSAGE = "PRIVATE_MESSAGE";
+    public static final String READ_RECEIPT = "READ_RECEIPT";
+    public static final String FRIEND = "FRIEND";
+
+    // Server -> client
+    public static final String WELCOME = "WELCOME";
+    public static final String REJECTED = "REJECTED";
+    public static final String PONG = "PONG";
+    public static final String PUBLIC_DELETED = "PUBLIC_DELETED";
+
+    // Raised locally by ChatPushClient, never sent over the wire
+    public static final String CONNECTED = "CONNECTED";
+    public static final String DISCONNECTED = "DISCONNECTED";
+
+    public ChatFrame {
+        fields = List.copyOf(fields);
+    }
+
+    public static ChatFrame of(String type, Object... fields) {
+        List<String> values = new ArrayList<>();
+        for (Object field : fields) {
+            values.add(String.valueOf(field));
+        }
+        return new ChatFrame(type, values);
+    }
+
+    public String field(int index) {
+        return fields.get(index);
+    }
+
+    public long longField(int index) {
+        return Long.parseLong(fields.get(index));
+    }
+
+    public int intField(int index) {
+        return Integer.parseInt(fields.get(index));
+    }
+
+    /**
+     * Encodes the frame as a single line, including the trailing newline.
+     */
+    public String encode() {
+        StringBuilder line = new StringBuilder(type);
+        Base64.Encoder encoder = Base64.getEncoder();
+        for (String field : fields) {
+            line.append('\t').append(encoder.encodeToString(field.getBytes(StandardCharsets.UTF_8)));
+        }
+        return line.append('\n').toString();
+    }
+
+    /**
+     * Parses a line produced by {@link #encode()} (without its newline).
+     */
+    public static ChatFrame decode(String line) {
+        String[] parts = line.split("\t", -1);
+        Base64.Decoder decoder = Base64.getDecoder();
+        List<String> fields = new ArrayList<>();
+        for (int i = 1; i < parts.length; i++) {
+            fields.add(new String(decoder.decode(parts[i]), StandardCharsets.UTF_8));
+        }
+        return new ChatFrame(parts[0], fields);
+    }
+}
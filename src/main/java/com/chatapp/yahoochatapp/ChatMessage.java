@@ -0,0 +1,66 @@
+package com.chatapp.yahoochatapp;
+
+import java.time.format.DateTimeFormatter;
+
+/**
+ * One row of the public chat list. The record itself never changes; everything that can change
+ * after the row is shown (id, text, status, likes, comments) lives in its observable
+ * {@link MessageState}, which {@link PublicMessageCell} binds to.
+ */
+public record ChatMessage(Kind kind, String sender, String time, PublicHistoryPager.Cursor cursor,
+                          String avatarPath, MessageState state) {
+
+    public enum Kind {
+        MESSAGE,
+        TYPING // transient "Bot is typing..." row
+    }
+
+    public static final String STATUS_SENDING = "Sending…";
+    public static final String STATUS_SENT = "Sent";
+    public static final String STATUS_WAITING = "Waiting for connection…";
+    public static final String STATUS_FAILED = "Not sent";
+
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm");
+
+    /**
+     * A saved message together with its interactions.
+     */
+    public static ChatMessage from(PublicHistoryPager.PublicMessage message, InteractionSnapshot snapshot) {
+        MessageState state = new MessageState(message.id(), message.content(), "");
+        state.setVersion(message.version());
+        state.applyInteractions(snapshot);
+        return new ChatMessage(Kind.MESSAGE, message.sender(), message.timestamp().toLocalDateTime().format(TIME_FORMAT),
+                message.cursor(), snapshot.getAvatarPath(message.sender()), state);
+    }
+
+    /**
+     * A message read from the local history cache, shown read-only until the database page with
+     * its likes and comments replaces it.
+     */
+    public static ChatMessage cached(PublicHistoryPager.PublicMessage message) {
+        ChatMessage row = from(message, InteractionSnapshot.empty());
+        row.state().setCached(true);
+        return row;
+    }
+
+    /**
+     * The user's own message before it has been stored (no row id or cursor yet), keyed by its client id.
+     */
+    public static ChatMessage pending(long clientId, String sender, String content, String time, String avatarPath) {
+        MessageState state = new MessageState(-1, content, STATUS_SENDING);
+        state.setClientId(clientId);
+        return new ChatMessage(Kind.MESSAGE, sender, time, null, avatarPath, state);
+    }
+
+    public static ChatMessage typing(String text) {
+        return new ChatMessage(Kind.TYPING, null, "", null, null, new MessageState(-1, text, ""));
+    }
+
+    public int id() {
+        return state.getId();
+    }
+
+    public boolean isMessage() {
+        return kind == Kind.MESSAGE;
+    }
+}
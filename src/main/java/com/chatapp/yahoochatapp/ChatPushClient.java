@@ -0,0 +1,180 @@
+package com.chatapp.yahoochatapp;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Holds the one persistent connection to the chat server and hands pushed frames to the
+ * controllers that subscribed. Reconnects with exponential backoff; while disconnected the
+ * controllers fall back to polling.
+ *
+ * Listeners are called on the connection thread, so UI work must go through Platform.runLater.
+ */
+public class ChatPushClient {
+
+    private static final String HOST = System.getProperty("chatapp.server.host", "localhost");
+    private static final int PORT = Integer.getInteger("chatapp.server.port", 5555);
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+
+    private static final int MAX_QUEUED_FRAMES = 1_000;
+
+    private static final List<Consumer<ChatFrame>> listeners = new CopyOnWriteArrayList<>();
+
+    // One thread writes every published frame, so a stalled server blocks it rather than the caller.
+    // A full backlog drops frames like a disconnect does; closing the socket unblocks the write.
+    private static final ExecutorService writer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(MAX_QUEUED_FRAMES), runnable -> {
+                Thread thread = new Thread(runnable, "chat-push-writer");
+                thread.setDaemon(true);
+                return thread;
+            }, (task, executor) -> System.err.println("Chat server is not reading, dropping a published frame."));
+
+    private static volatile String user;
+    private static volatile Socket socket;
+    private static volatile boolean connected = false;
+    private static Thread connectionThread;
+
+    /**
+     * Starts (or retargets) the background connection for the given user, authenticated by the
+     * push token issued at login. Without a token there is nothing to connect with, and the
+     * controllers keep polling.
+     */
+    public static synchronized void connect(String username, String pushToken) {
+        if (username.equals(user) && connectionThread != null && connectionThread.isAlive()) {
+            return;
+        }
+        disconnect();
+        if (pushToken == null) return;
+
+        user = username;
+        connectionThread = Thread.ofVirtual().name("chat-push-client").start(() -> runConnection(username, pushToken));
+    }
+
+    public static synchronized void disconnect() {
+        user = null;
+        if (connectionThread != null) {
+            connectionThread.interrupt();
+            connectionThread = null;
+        }
+        closeSocket();
+    }
+
+    public static boolean isConnected() {
+        return connected;
+    }
+
+    public static void addListener(Consumer<ChatFrame> listener) {
+        listeners.add(listener);
+    }
+
+    public static void removeListener(Consumer<ChatFrame> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Announces a change to the server. Silently dropped while disconnected: the change is
+     * already in the database and other clients will pick it up when they resync. Never blocks:
+     * callers are often on the FX thread, so the frame is written by the writer thread.
+     */
+    public static void publish(String type, Object... fields) {
+        Socket current = socket;
+        if (!connected || current == null) return;
+
+        byte[] frame = ChatFrame.of(type, fields).encode().getBytes(StandardCharsets.UTF_8);
+        writer.execute(() -> write(current, type, frame));
+    }
+
+    private static void write(Socket target, String type, byte[] frame) {
+        if (target != socket) return; // reconnected (or closed) since it was queued
+
+        try {
+            OutputStream out = target.getOutputStream();
+            out.write(frame);
+            out.flush();
+        } catch (IOException e) {
+            System.err.println("Could not publish " + type + ": " + e.getMessage());
+            closeSocket();
+        }
+    }
+
+    private static void runConnection(String username, String pushToken) {
+        long backoff = 1_000;
+
+        while (username.equals(user) && !Thread.currentThread().isInterrupted()) {
+            try (Socket s = new Socket()) {
+                s.connect(new InetSocketAddress(HOST, PORT), 3_000);
+                s.setTcpNoDelay(true);
+                socket = s;
+
+                s.getOutputStream().write(ChatFrame.of(ChatFrame.HELLO, pushToken).encode().getBytes(StandardCharsets.UTF_8));
+                s.getOutputStream().flush();
+
+                BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+                String line;
+                while ((line = in.readLine()) != null) {
+                    ChatFrame frame = ChatFrame.decode(line);
+                    if (ChatFrame.REJECTED.equals(frame.type())) {
+                        System.err.println("Chat server rejected the session of " + username + ", falling back to polling.");
+                        return; // the token is expired or revoked; only a new login gets another
+                    } else if (ChatFrame.WELCOME.equals(frame.type())) {
+                        connected = true;
+                        backoff = 1_000;
+                        System.out.println("✅ Connected to chat server as " + username);
+                        dispatch(ChatFrame.of(ChatFrame.CONNECTED));
+                    } else {
+                        dispatch(frame);
+                    }
+                }
+            } catch (IOException | IllegalArgumentException e) {
+                if (backoff == 1_000) {
+                    System.err.println("Chat server unavailable (" + e.getMessage() + "), falling back to polling.");
+                }
+            } finally {
+                socket = null;
+                if (connected) {
+                    connected = false;
+                    dispatch(ChatFrame.of(ChatFrame.DISCONNECTED));
+                }
+            }
+
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                return;
+            }
+            backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+        }
+    }
+
+    private static void dispatch(ChatFrame frame) {
+        for (Consumer<ChatFrame> listener : listeners) {
+            try {
+                listener.accept(frame);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private static void closeSocket() {
+        Socket current = socket;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
@@ -0,0 +1,442 @@
+package com.chatapp.yahoochatapp;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded pool of physical JDBC connections.
+ *
+ * Callers get a proxy whose {@code close()} hands the physical connection back to the pool,
+ * so the usual try-with-resources blocks keep working unchanged. A housekeeping thread evicts
+ * connections that sat idle for too long, tops the pool back up to its minimum size and
+ * reports connections that have been borrowed for longer than the leak threshold.
+ */
+public class ConnectionPool {
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final Settings settings;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition connectionReturned = lock.newCondition();
+    private final Deque<PooledConnection> idle = new ArrayDeque<>();
+    private final Set<PooledConnection> borrowed = new HashSet<>();
+    private int totalConnections = 0;
+    private boolean shutdown = false;
+
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong leakCount = new AtomicLong();
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong evictedCount = new AtomicLong();
+
+    private final ScheduledExecutorService housekeeper;
+
+    public ConnectionPool(String url, String user, String password, Settings settings) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.settings = settings;
+
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "db-pool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = settings.housekeepingIntervalMillis;
+        housekeeper.scheduleWithFixedDelay(this::housekeep, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a connection, waiting up to the acquisition timeout when the pool is exhausted.
+     */
+    public Connection getConnection() throws SQLException {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(settings.acquireTimeoutMillis);
+
+        while (true) {
+            PooledConnection candidate = null;
+            boolean mayCreate = false;
+
+            lock.lock();
+            try {
+                while (candidate == null && !mayCreate) {
+                    if (shutdown) {
+                        throw new SQLException("Connection pool has been shut down", "08003");
+                    }
+                    if (!idle.isEmpty()) {
+                        candidate = idle.pollFirst(); // most recently returned = warmest
+                    } else if (totalConnections < settings.maxSize) {
+                        totalConnections++; // reserve the slot before connecting outside the lock
+                        mayCreate = true;
+                    } else {
+                        long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0) {
+                            timeoutCount.incrementAndGet();
+                            throw new SQLException("Timed out after " + settings.acquireTimeoutMillis
+                                    + " ms waiting for a database connection (" + describe() + ")", "08001");
+                        }
+                        connectionReturned.awaitNanos(remaining);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for a database connection", e);
+            } finally {
+                lock.unlock();
+            }
+
+            if (mayCreate) {
+                try {
+                    candidate = new PooledConnection(openPhysical());
+                } catch (SQLException e) {
+                    releaseSlot();
+                    throw e;
+                }
+            } else if (!isUsable(candidate)) {
+                destroy(candidate);
+                continue;
+            }
+
+            recordWait(System.nanoTime() - start);
+            lock.lock();
+            try {
+                candidate.borrowedAt = System.currentTimeMillis();
+                candidate.borrowedBy = Thread.currentThread().getName();
+                candidate.leakReported = false;
+                borrowed.add(candidate);
+            } finally {
+                lock.unlock();
+            }
+            return candidate.newHandle();
+        }
+    }
+
+    /**
+     * Snapshot of the pool counters, mainly for logging and diagnostics.
+     */
+    public Stats getStats() {
+        lock.lock();
+        try {
+            long borrows = borrowCount.get();
+            return new Stats(
+                    borrowed.size(),
+                    idle.size(),
+                    totalConnections,
+                    borrows,
+                    borrows == 0 ? 0 : totalWaitNanos.get() / borrows / 1_000_000.0,
+                    maxWaitNanos.get() / 1_000_000.0,
+                    timeoutCount.get(),
+                    leakCount.get(),
+                    createdCount.get(),
+                    evictedCount.get()
+            );
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Closes every idle connection and refuses further borrows. Borrowed connections are
+     * closed when they are handed back.
+     */
+    public void shutdown() {
+        List<PooledConnection> toClose;
+        lock.lock();
+        try {
+            shutdown = true;
+            toClose = new ArrayList<>(idle);
+            idle.clear();
+            connectionReturned.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        housekeeper.shutdownNow();
+        toClose.forEach(this::destroy);
+    }
+
+    private Connection openPhysical() throws SQLException {
+        Connection connection = DriverManager.getConnection(url, user, password);
+        createdCount.incrementAndGet();
+        return connection;
+    }
+
+    private boolean isUsable(PooledConnection pooled) {
+        try {
+            return pooled.physical.isValid(settings.validationTimeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void recordWait(long waitNanos) {
+        borrowCount.incrementAndGet();
+        totalWaitNanos.addAndGet(waitNanos);
+        maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+    }
+
+    private void release(PooledConnection pooled) {
+        boolean reusable = resetState(pooled);
+
+        lock.lock();
+        try {
+            borrowed.remove(pooled);
+            if (reusable && !shutdown) {
+                pooled.lastUsedAt = System.currentTimeMillis();
+                idle.addFirst(pooled);
+                connectionReturned.signal();
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        destroy(pooled);
+    }
+
+    // Undo anything a caller may have changed so the next borrower gets a clean connection
+    private boolean resetState(PooledConnection pooled) {
+        try {
+            Connection physical = pooled.physical;
+            if (physical.isClosed()) {
+                return false;
+            }
+            if (!physical.getAutoCommit()) {
+                physical.rollback();
+                physical.setAutoCommit(true);
+            }
+            if (physical.isReadOnly()) {
+                physical.setReadOnly(false);
+            }
+            physical.clearWarnings();
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void destroy(PooledConnection pooled) {
+        try {
+            pooled.physical.close();
+        } catch (SQLException e) {
+            System.err.println("Error closing pooled connection: " + e.getMessage());
+        }
+        releaseSlot();
+    }
+
+    private void releaseSlot() {
+        lock.lock();
+        try {
+            totalConnections--;
+            connectionReturned.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void housekeep() {
+        long now = System.currentTimeMillis();
+        List<PooledConnection> expired = new ArrayList<>();
+        int missing;
+
+        lock.lock();
+        try {
+            // Oldest idle connections sit at the tail of the deque
+            Iterator<PooledConnection> it = idle.descendingIterator();
+            while (it.hasNext() && totalConnections - expired.size() > settings.minSize) {
+                PooledConnection pooled = it.next();
+                if (now - pooled.lastUsedAt < settings.idleTimeoutMillis) {
+                    break;
+                }
+                it.remove();
+                expired.add(pooled);
+            }
+
+            for (PooledConnection pooled : borrowed) {
+                if (!pooled.leakReported && now - pooled.borrowedAt > settings.leakThresholdMillis) {
+                    pooled.leakReported = true;
+                    leakCount.incrementAndGet();
+                    System.err.println("⚠️ Possible connection leak: connection borrowed by thread '"
+                            + pooled.borrowedBy + "' has not been returned for "
+                            + (now - pooled.borrowedAt) + " ms");
+                }
+            }
+
+            missing = shutdown ? 0 : settings.minSize - (totalConnections - expired.size());
+        } finally {
+            lock.unlock();
+        }
+
+        for (PooledConnection pooled : expired) {
+            evictedCount.incrementAndGet();
+            destroy(pooled);
+        }
+
+        for (int i = 0; i < missing; i++) {
+            if (!warmUpOne()) {
+                break;
+            }
+        }
+    }
+
+    private boolean warmUpOne() {
+        lock.lock();
+        try {
+            if (shutdown || totalConnections >= settings.minSize) {
+                return false;
+            }
+            totalConnections++;
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            PooledConnection pooled = new PooledConnection(openPhysical());
+            lock.lock();
+            try {
+                idle.addLast(pooled);
+                connectionReturned.signal();
+            } finally {
+                lock.unlock();
+            }
+            return true;
+        } catch (SQLException e) {
+            releaseSlot();
+            System.err.println("Could not pre-open database connection: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private String describe() {
+        return "active=" + borrowed.size() + ", idle=" + idle.size() + ", max=" + settings.maxSize;
+    }
+
+    /**
+     * One physical connection plus the bookkeeping the pool needs about it.
+     */
+    private final class PooledConnection {
+        private final Connection physical;
+        private long lastUsedAt = System.currentTimeMillis();
+        private long borrowedAt;
+        private String borrowedBy;
+        private boolean leakReported;
+
+        private PooledConnection(Connection physical) {
+            this.physical = physical;
+        }
+
+        private Connection newHandle() {
+            return (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    new Handle(this));
+        }
+    }
+
+    /**
+     * Logical connection handed to callers. Closing it returns the physical connection;
+     * using it afterwards fails instead of silently touching someone else's connection.
+     */
+    private final class Handle implements InvocationHandler {
+        private final PooledConnection pooled;
+        private boolean closed = false;
+
+        private Handle(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        release(pooled);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || pooled.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + pooled.physical + "]";
+                default:
+                    if (closed) {
+                        throw new SQLException("Connection has already been returned to the pool");
+                    }
+                    try {
+                        return method.invoke(pooled.physical, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+            }
+        }
+    }
+
+    /**
+     * Pool sizing and timing knobs.
+     */
+    public static class Settings {
+        int minSize = 2;
+        int maxSize = 10;
+        long idleTimeoutMillis = 5 * 60_000;
+        long acquireTimeoutMillis = 10_000;
+        int validationTimeoutSeconds = 2;
+        long leakThresholdMillis = 60_000;
+        long housekeepingIntervalMillis = 30_000;
+
+        /**
+         * Reads overrides from {@code chatapp.db.pool.*} system properties, falling back to the defaults.
+         */
+        public static Settings fromSystemProperties() {
+            Settings settings = new Settings();
+            settings.minSize = Integer.getInteger("chatapp.db.pool.minSize", settings.minSize);
+            settings.maxSize = Integer.getInteger("chatapp.db.pool.maxSize", settings.maxSize);
+            settings.idleTimeoutMillis = Long.getLong("chatapp.db.pool.idleTimeoutMs", settings.idleTimeoutMillis);
+            settings.acquireTimeoutMillis = Long.getLong("chatapp.db.pool.acquireTimeoutMs", settings.acquireTimeoutMillis);
+            settings.validationTimeoutSeconds = Integer.getInteger("chatapp.db.pool.validationTimeoutSec", settings.validationTimeoutSeconds);
+            settings.leakThresholdMillis = Long.getLong("chatapp.db.pool.leakThresholdMs", settings.leakThresholdMillis);
+            settings.housekeepingIntervalMillis = Long.getLong("chatapp.db.pool.housekeepingMs", settings.housekeepingIntervalMillis);
+
+            if (settings.maxSize < 1) {
+                settings.maxSize = 1;
+            }
+            settings.minSize = Math.max(0, Math.min(settings.minSize, settings.maxSize));
+            return settings;
+        }
+    }
+
+    /**
+     * Point-in-time view of the pool counters.
+     */
+    public record Stats(int active, int idle, int total, long borrows, double averageWaitMillis,
+                        double maxWaitMillis, long timeouts, long leaks, long created, long evicted) {
+        @Override
+        public String toString() {
+            return String.format("active=%d idle=%d total=%d borrows=%d avgWait=%.2fms maxWait=%.2fms timeouts=%d leaks=%d created=%d evicted=%d",
+                    active, idle, total, borrows, averageWaitMillis, maxWaitMillis, timeouts, leaks, created, evicted);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.chatapp.yahoochatapp;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The {@code conversation_summary} table: one row per (user, peer) with the last message, a
+ * preview, the time of the last activity and the unread count.
+ *
+ * Writers call the update methods on the connection of their own transaction, next to the change
+ * they describe, so the inbox can be loaded with one indexed query and sorted by recent activity
+ * without reading any message rows.
+ */
+public class ConversationSummary {
+
+    private static final int PREVIEW_LENGTH = 100; // column width
+
+    /**
+     * One inbox row as seen by its user.
+     */
+    public record Summary(String peer, String lastSender, String preview, Timestamp lastAt, int unreadCount) {
+
+        public Summary withUnreadCount(int count) {
+            return new Summary(peer, lastSender, preview, lastAt, count);
+        }
+    }
+
+    // Assignments run left to right, so last_message_id is compared before it is moved
+    private static final String UPSERT_SENT = "INSERT INTO conversation_summary " +
+            "(user_id, peer_id, last_message_id, last_sender_id, preview, last_at, unread_count) VALUES (?, ?, ?, ?, ?, NOW(3), ?) " +
+            "ON DUPLICATE KEY UPDATE " +
+            "last_sender_id = IF(VALUES(last_message_id) > last_message_id, VALUES(last_sender_id), last_sender_id), " +
+            "preview = IF(VALUES(last_message_id) > last_message_id, VALUES(preview), preview), " +
+            "last_at = IF(VALUES(last_message_id) > last_message_id, VALUES(last_at), last_at), " +
+            "unread_count = unread_count + VALUES(unread_count), " +
+            "last_message_id = GREATEST(last_message_id, VALUES(last_message_id))";
+
+    static final String INBOX = "SELECT peer_id, last_sender_id, preview, last_at, unread_count FROM conversation_summary " +
+            "WHERE user_id = ? ORDER BY last_at DESC";
+
+    static final String RECOUNT = "UPDATE conversation_summary s " +
+            "JOIN conversation_read_cursor c ON c.user_id = s.user_id AND c.peer_id = s.peer_id " +
+            "SET s.unread_count = (SELECT COUNT(*) FROM chat_messages m " +
+            " WHERE m.receiver_id = s.user_id AND m.sender_id = s.peer_id AND m.id > c.last_read_id AND m.deleted = 0) " +
+            "WHERE s.user_id = ? AND s.peer_id = ?";
+
+    /**
+     * The user's conversations, most recent first; answered from the (user, last_at) index.
+     */
+    public static CompletableFuture<List<Summary>> loadInbox(String user) {
+        return DataAccess.supply(() -> {
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(INBOX)) {
+                pstmt.setInt(1, UserDirectory.idOf(conn, user));
+
+                List<int[]> userIds = new ArrayList<>(); // (peer, last sender) per row
+                List<Summary> rows = new ArrayList<>();
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        userIds.add(new int[]{rs.getInt("peer_id"), rs.getInt("last_sender_id")});
+                        rows.add(new Summary(null, null, rs.getString("preview"), rs.getTimestamp("last_at"), rs.getInt("unread_count")));
+                    }
+                }
+
+                List<Integer> lookup = new ArrayList<>();
+                userIds.forEach(pair -> { lookup.add(pair[0]); lookup.add(pair[1]); });
+                Map<Integer, String> names = UserDirectory.namesOf(conn, lookup);
+
+                List<Summary> inbox = new ArrayList<>();
+                for (int i = 0; i < rows.size(); i++) {
+                    String peer = names.get(userIds.get(i)[0]);
+                    if (peer == null) continue; // the peer's account is gone
+                    Summary row = rows.get(i);
+                    inbox.add(new Summary(peer, names.get(userIds.get(i)[1]), row.preview(), row.lastAt(), row.unreadCount()));
+                }
+                return inbox;
+            }
+        });
+    }
+
+    /**
+     * Both sides of each newly inserted message, as a single batch: the sender's row moves to the
+     * message, the receiver's row also counts it as unread.
+     */
+    public static void recordSent(Connection conn, List<Integer> ids, List<String> senders, List<String> receivers,
+                                  List<String> texts) throws SQLException {
+        List<Integer> senderIds = UserDirectory.idsOf(conn, senders);
+        List<Integer> receiverIds = UserDirectory.idsOf(conn, receivers);
+        try (PreparedStatement pstmt = conn.prepareStatement(UPSERT_SENT)) {
+            for (int i = 0; i < ids.size(); i++) {
+                String preview = preview(texts.get(i));
+                bindSent(pstmt, senderIds.get(i), receiverIds.get(i), ids.get(i), senderIds.get(i), preview, 0);
+                pstmt.addBatch();
+                bindSent(pstmt, receiverIds.get(i), senderIds.get(i), ids.get(i), senderIds.get(i), preview, 1);
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
+    }
+
+    /**
+     * The user has read everything from {@code peer}.
+     */
+    public static void markRead(Connection conn, String user, String peer) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "UPDATE conversation_summary SET unread_count = 0 WHERE user_id = ? AND peer_id = ?")) {
+            pstmt.setInt(1, UserDirectory.idOf(conn, user));
+            pstmt.setInt(2, UserDirectory.idOf(conn, peer));
+            pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Counts the user's unread messages from {@code peer} again from the read cursor, for changes
+     * that are not a plain "+1" or "all read".
+     */
+    public static void recount(Connection conn, String user, String peer) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(RECOUNT)) {
+            pstmt.setInt(1, UserDirectory.idOf(conn, user));
+            pstmt.setInt(2, UserDirectory.idOf(conn, peer));
+            pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Refreshes the preview on both sides if the edited message is the conversation's last one;
+     * call it after the edit. Each side is a primary-key join.
+     */
+    public static void updatePreview(Connection conn, int messageId) throws SQLException {
+        String[] sides = {
+                "s.user_id = m.sender_id AND s.peer_id = m.receiver_id",
+                "s.user_id = m.receiver_id AND s.peer_id = m.sender_id"
+        };
+        for (String side : sides) {
+            try (PreparedStatement pstmt = conn.prepareStatement("UPDATE conversation_summary s " +
+                    "JOIN chat_messages m ON " + side + " AND s.last_message_id = m.id " +
+                    "SET s.preview = LEFT(m.message, " + PREVIEW_LENGTH + ") WHERE m.id = ?")) {
+                pstmt.setInt(1, messageId);
+                pstmt.executeUpdate();
+            }
+        }
+    }
+
+    /**
+     * Points both rows of the conversation at its newest remaining message and recounts the
+     * unread messages; for deletes.
+     */
+    public static void refresh(Connection conn, String a, String b) throws SQLException {
+        String query = "UPDATE conversation_summary s " +
+                "LEFT JOIN chat_messages m ON m.id = (SELECT MAX(id) FROM chat_messages " +
+                " WHERE ((sender_id = ? AND receiver_id = ?) OR (sender_id = ? AND receiver_id = ?)) AND deleted = 0) " +
+                "SET s.last_message_id = COALESCE(m.id, 0), s.last_sender_id = m.sender_id, " +
+                "s.preview = LEFT(m.message, " + PREVIEW_LENGTH + ") " +
+                "WHERE (s.user_id = ? AND s.peer_id = ?) OR (s.user_id = ? AND s.peer_id = ?)";
+
+        int aId = UserDirectory.idOf(conn, a);
+        int bId = UserDirectory.idOf(conn, b);
+        try (PreparedStatement pstmt = conn.prepareStatement(query)) {
+            int index = 1;
+            for (int i = 0; i < 2; i++) { // the subquery's pair, then the two summary rows
+                pstmt.setInt(index++, aId);
+                pstmt.setInt(index++, bId);
+                pstmt.setInt(index++, bId);
+                pstmt.setInt(index++, aId);
+            }
+            pstmt.executeUpdate();
+        }
+        recount(conn, a, b);
+        recount(conn, b, a);
+    }
+
+    private static void bindSent(PreparedStatement pstmt, int userId, int peerId, int messageId, int senderId,
+                                 String preview, int unread) throws SQLException {
+        pstmt.setInt(1, userId);
+        pstmt.setInt(2, peerId);
+        pstmt.setInt(3, messageId);
+        pstmt.setInt(4, senderId);
+        pstmt.setString(5, preview);
+        pstmt.setInt(6, unread);
+    }
+
+    // Same cut as LEFT(message, 100): code points, not chars
+    private static String preview(String text) {
+        if (text.codePointCount(0, text.length()) <= PREVIEW_LENGTH) return text;
+        return text.substring(0, text.offsetByCodePoints(0, PREVIEW_LENGTH));
+    }
+}
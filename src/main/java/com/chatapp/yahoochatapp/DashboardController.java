@@ -8,7 +8,6 @@ import javafx.scene.Scene;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
-import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.shape.Circle;
 import javafx.stage.FileChooser;
@@ -16,10 +15,6 @@ import javafx.stage.Stage;
 
 import java.io.File;
 import java.io.IOException;
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.SQLException;
 
 public class DashboardController {
 
@@ -46,24 +41,14 @@ public class DashboardController {
 
     // Method to load profile picture from database
     private void loadProfilePicture(String username) {
-        String query = "SELECT profile_picture FROM users WHERE username = ?";
-
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(query)) {
-
-            pstmt.setString(1, username);
-            ResultSet rs = pstmt.executeQuery();
-
-            if (rs.next()) {
-                String imagePath = rs.getString("profile_picture");
-                if (imagePath != null && !imagePath.isEmpty()) {
-                    profileImageView.setImage(new Image(imagePath));
-                    applyCircularClip();  // Apply round frame after setting image
-                }
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+        UserRepository.getProfilePicture(username)
+                .thenAcceptAsync(imagePath -> {
+                    if (imagePath != null && !imagePath.isEmpty()) {
+                        profileImageView.setImage(AvatarCache.get(username, imagePath, profileImageView.getFitWidth()));
+                        applyCircularClip();  // Apply round frame after setting image
+                    }
+                }, DataAccess.FX)
+                .exceptionally(DataAccess::logFailure);
     }
 
     // Handle Upload Picture from Dashboard
@@ -76,7 +61,8 @@ public class DashboardController {
         File selectedFile = fileChooser.showOpenDialog(null);
         if (selectedFile != null) {
             String imagePath = selectedFile.toURI().toString();
-            profileImageView.setImage(new Image(imagePath));
+            AvatarCache.invalidate(SessionManager.getUser());
+            profileImageView.setImage(AvatarCache.get(SessionManager.getUser(), imagePath, profileImageView.getFitWidth()));
 
             // Save the image path to the database
             updateProfilePicture(imagePath);
@@ -89,9 +75,13 @@ public class DashboardController {
             FXMLLoader loader = new FXMLLoader(getClass().getResource("chat-view.fxml"));
             Parent root = loader.load();
 
+            ChatController chatController = loader.getController();
+
             Stage stage = new Stage();
             stage.setTitle("Chat Window");
             stage.setScene(new Scene(root, 400, 600));
+            stage.setOnHidden(e -> chatController.close());
+            chatController.setStage(stage); // ✅ Fallback polling is tied to this window
             stage.show();
         } catch (IOException e) {
             e.printStackTrace();
@@ -100,24 +90,16 @@ public class DashboardController {
 
     // Update profile picture in the database
     private void updateProfilePicture(String imagePath) {
-        String query = "UPDATE users SET profile_picture = ? WHERE username = ?";
-
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(query)) {
-
-            pstmt.setString(1, imagePath);
-            pstmt.setString(2, SessionManager.getUser());
-
-            int rowsUpdated = pstmt.executeUpdate();
-            if (rowsUpdated > 0) {
-                showAlert(Alert.AlertType.INFORMATION, "Success", "Profile picture updated successfully.");
-            } else {
-                showAlert(Alert.AlertType.ERROR, "Update Failed", "Could not update profile picture.");
-            }
-
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+        UserRepository.updateProfilePicture(SessionManager.getUser(), imagePath)
+                .thenAcceptAsync(updated -> {
+                    if (updated) {
+                        SessionManager.setProfilePicture(imagePath);
+                        showAlert(Alert.AlertType.INFORMATION, "Success", "Profile picture updated successfully.");
+                    } else {
+                        showAlert(Alert.AlertType.ERROR, "Update Failed", "Could not update profile picture.");
+                    }
+                }, DataAccess.FX)
+                .exceptionally(DataAccess::logFailure);
     }
 
     // Show alert method
@@ -132,7 +114,12 @@ public class DashboardController {
     // Handle Logout
     @FXML
     private void handleLogout(ActionEvent event) {
+        String user = SessionManager.getUser();
         SessionManager.clearSession();
+        if (user != null) {
+            HistoryCache.clear(user); // nothing of this account stays readable on disk
+        }
+        ChatPushClient.disconnect();
         showAlert(Alert.AlertType.INFORMATION, "Logout", "You have been logged out.");
         SceneSwitcher.switchScene(event, "login-view.fxml");
     }
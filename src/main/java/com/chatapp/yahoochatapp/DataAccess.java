@@ -0,0 +1,126 @@
+package com.chatapp.yahoochatapp;
+
+import javafx.application.Platform;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs repository work on virtual threads and brings results back to the JavaFX thread.
+ *
+ * Repositories wrap their JDBC code in {@link #supply} / {@link #run}; controllers continue on
+ * the UI with {@code thenAcceptAsync(..., DataAccess.FX)}. Continuations that finish close
+ * together are delivered in a single {@code Platform.runLater} pulse instead of one each.
+ */
+public class DataAccess {
+
+    @FunctionalInterface
+    public interface SqlSupplier<T> {
+        T get() throws SQLException;
+    }
+
+    @FunctionalInterface
+    public interface SqlRunnable {
+        void run() throws SQLException;
+    }
+
+    private static final ExecutorService EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+
+    private static final Queue<Runnable> fxQueue = new ConcurrentLinkedQueue<>();
+    private static final AtomicBoolean fxDrainScheduled = new AtomicBoolean(false);
+
+    /**
+     * Executor that runs tasks on the JavaFX application thread, batched per pulse.
+     */
+    public static final Executor FX = DataAccess::runOnFxThread;
+
+    public static <T> CompletableFuture<T> supply(SqlSupplier<T> work) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return work.get();
+            } catch (SQLException e) {
+                throw new CompletionException(e);
+            }
+        }, EXECUTOR);
+    }
+
+    public static CompletableFuture<Void> run(SqlRunnable work) {
+        return supply(() -> {
+            work.run();
+            return null;
+        });
+    }
+
+    /**
+     * Non-database background work (e.g. password hashing) on the same executor.
+     */
+    public static Executor background() {
+        return EXECUTOR;
+    }
+
+    public static void runOnFxThread(Runnable task) {
+        fxQueue.add(task);
+        if (fxDrainScheduled.compareAndSet(false, true)) {
+            Platform.runLater(DataAccess::drainFxQueue);
+        }
+    }
+
+    private static void drainFxQueue() {
+        fxDrainScheduled.set(false);
+
+        Runnable task;
+        while ((task = fxQueue.poll()) != null) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Standard failure handler for {@code exceptionally(...)}: logs the root cause.
+     */
+    public static <T> T logFailure(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        cause.printStackTrace();
+        return null;
+    }
+
+    /**
+     * Runs {@code work} as one transaction on {@code conn}, e.g. a change and its counter or change log row.
+     */
+    public static void inTransaction(Connection conn, SqlRunnable work) throws SQLException {
+        inTransaction(conn, () -> {
+            work.run();
+            return null;
+        });
+    }
+
+    public static <T> T inTransaction(Connection conn, SqlSupplier<T> work) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try {
+            T result = work.get();
+            conn.commit();
+            return result;
+        } catch (SQLException | RuntimeException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    public static void shutdown() {
+        EXECUTOR.shutdown();
+    }
+}
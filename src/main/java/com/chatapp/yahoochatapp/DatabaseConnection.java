@@ -0,0 +1,44 @@
+package com.chatapp.yahoochatapp;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+public class DatabaseConnection {
+
+    // Connection details can be overridden with -Dchatapp.db.url / .user / .password.
+    // rewriteBatchedStatements lets the driver send a JDBC batch as one multi-row INSERT.
+    private static final String URL = System.getProperty("chatapp.db.url",
+            "jdbc:mysql://localhost:3306/chat_app?rewriteBatchedStatements=true");
+    private static final String USER = System.getProperty("chatapp.db.user", "root");
+    private static final String PASSWORD = System.getProperty("chatapp.db.password", "");
+
+    private static final ConnectionPool POOL =
+            new ConnectionPool(URL, USER, PASSWORD, ConnectionPool.Settings.fromSystemProperties());
+
+    // The JavaFX application thread; a JDBC call there would freeze rendering and input
+    private static volatile Thread uiThread;
+
+    public static void forbidThread(Thread thread) {
+        uiThread = thread;
+    }
+
+    /**
+     * Borrows a pooled connection. Closing it (e.g. at the end of a try-with-resources block)
+     * returns it to the pool instead of closing the socket.
+     */
+    public static Connection getConnection() throws SQLException {
+        if (Thread.currentThread() == uiThread) {
+            throw new IllegalStateException("JDBC call on the JavaFX application thread; go through a repository");
+        }
+        return POOL.getConnection();
+    }
+
+    public static ConnectionPool.Stats getPoolStats() {
+        return POOL.getStats();
+    }
+
+    public static void shutdown() {
+        System.out.println("Closing database pool: " + POOL.getStats());
+        POOL.shutdown();
+    }
+}
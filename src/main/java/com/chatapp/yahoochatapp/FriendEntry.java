@@ -0,0 +1,82 @@
+package com.chatapp.yahoochatapp;
+
+import javafx.beans.property.IntegerProperty;
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.SimpleIntegerProperty;
+import javafx.beans.property.SimpleObjectProperty;
+import javafx.beans.property.SimpleStringProperty;
+import javafx.beans.property.StringProperty;
+
+/**
+ * One row of the friends list: the friend's username plus the edge status, unread count and
+ * last message preview that {@link FriendListCell} binds to. The same instance is kept across friend graph reloads,
+ * so badge updates only flip a property. FX thread only.
+ */
+public class FriendEntry {
+
+    private final String name;
+    private final ObjectProperty<FriendGraph.Status> status = new SimpleObjectProperty<>(this, "status");
+    private final IntegerProperty unreadCount = new SimpleIntegerProperty(this, "unreadCount", 0);
+    private final StringProperty preview = new SimpleStringProperty(this, "preview", "");
+    private long lastActivity; // epoch millis of the last message either way, 0 if none; sorts the list
+
+    public FriendEntry(String name, FriendGraph.Status status) {
+        this.name = name;
+        this.status.set(status);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Private chats are only open between accepted friends.
+     */
+    public boolean canChat() {
+        return getStatus() == FriendGraph.Status.ACCEPTED;
+    }
+
+    public FriendGraph.Status getStatus() {
+        return status.get();
+    }
+
+    public void setStatus(FriendGraph.Status value) {
+        status.set(value);
+    }
+
+    public ObjectProperty<FriendGraph.Status> statusProperty() {
+        return status;
+    }
+
+    public int getUnreadCount() {
+        return unreadCount.get();
+    }
+
+    public void setUnreadCount(int value) {
+        unreadCount.set(value);
+    }
+
+    public IntegerProperty unreadCountProperty() {
+        return unreadCount;
+    }
+
+    public String getPreview() {
+        return preview.get();
+    }
+
+    public void setPreview(String value) {
+        preview.set(value);
+    }
+
+    public StringProperty previewProperty() {
+        return preview;
+    }
+
+    public long getLastActivity() {
+        return lastActivity;
+    }
+
+    public void setLastActivity(long value) {
+        lastActivity = value;
+    }
+}
@@ -0,0 +1,196 @@
+package com.chatapp.yahoochatapp;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The logged-in user's friend edges, held in memory as one sorted adjacency set per status.
+ *
+ * All edges are loaded with a single query; adds, requests, accepts and removals are single
+ * statements whose result is applied to the sets directly instead of reloading. The friends
+ * {@code ListView} shows {@link #getEntries()} and nothing else; entries are reused across
+ * reloads so their unread badges survive.
+ *
+ * Unread counts, previews and recency come from the user's {@link ConversationSummary} rows;
+ * entries are ordered by the last message either way, then by name. In-memory state is only
+ * touched on the FX thread.
+ */
+public class FriendGraph {
+
+    public enum Status {
+        ACCEPTED,
+        PENDING_REQUEST, // they asked us
+        REQUESTED        // we asked them
+    }
+
+    private final String owner;
+    private final Map<Status, Set<String>> edges = new EnumMap<>(Status.class);
+    private final Map<String, FriendEntry> entriesByName = new HashMap<>();
+    private final Map<String, ConversationSummary.Summary> summaries = new HashMap<>();
+    private final ObservableList<FriendEntry> entries = FXCollections.observableArrayList();
+
+    public FriendGraph(String owner) {
+        this.owner = owner;
+        for (Status status : Status.values()) {
+            edges.put(status, new TreeSet<>());
+        }
+    }
+
+    /**
+     * Replaces every edge with the current rows; completes on the FX thread.
+     */
+    public CompletableFuture<Void> reload() {
+        return FriendRepository.loadFriendEdges(owner)
+                .thenAcceptAsync(loaded -> {
+                    for (Status status : Status.values()) {
+                        Set<String> names = edges.get(status);
+                        names.clear();
+                        names.addAll(loaded.getOrDefault(status, Set.of()));
+                    }
+                    refreshEntries();
+                }, DataAccess.FX);
+    }
+
+    /**
+     * Replaces the inbox state (unread counts, previews, recency) in one indexed query; completes
+     * on the FX thread.
+     */
+    public CompletableFuture<Void> reloadSummaries() {
+        return ConversationSummary.loadInbox(owner)
+                .thenAcceptAsync(loaded -> {
+                    summaries.clear();
+                    for (ConversationSummary.Summary summary : loaded) {
+                        summaries.put(summary.peer(), summary);
+                    }
+                    refreshEntries();
+                }, DataAccess.FX);
+    }
+
+    /**
+     * Clears the friend's unread count locally, e.g. once the conversation is opened.
+     */
+    public void markRead(String name) {
+        summaries.computeIfPresent(name, (n, summary) -> summary.withUnreadCount(0));
+        FriendEntry entry = entriesByName.get(name);
+        if (entry != null) entry.setUnreadCount(0);
+    }
+
+    public CompletableFuture<Boolean> sendRequest(String friend) {
+        return FriendRepository.sendFriendRequest(owner, friend)
+                .thenApplyAsync(sent -> {
+                    if (sent) put(friend, Status.REQUESTED);
+                    return sent;
+                }, DataAccess.FX);
+    }
+
+    public CompletableFuture<Boolean> addFriend(String friend) {
+        return FriendRepository.addFriend(owner, friend)
+                .thenApplyAsync(added -> {
+                    if (added) put(friend, Status.ACCEPTED);
+                    return added;
+                }, DataAccess.FX);
+    }
+
+    public CompletableFuture<Boolean> accept(String requester) {
+        return FriendRepository.acceptFriendRequest(requester, owner)
+                .thenApplyAsync(accepted -> {
+                    if (accepted) put(requester, Status.ACCEPTED);
+                    return accepted;
+                }, DataAccess.FX);
+    }
+
+    public CompletableFuture<Boolean> remove(String friend) {
+        return FriendRepository.removeFriend(owner, friend)
+                .thenApplyAsync(removed -> {
+                    if (removed) {
+                        edges.values().forEach(names -> names.remove(friend));
+                        refreshEntries();
+                    }
+                    return removed;
+                }, DataAccess.FX);
+    }
+
+    /**
+     * Status of the edge to {@code name}, or {@code null} if there is none.
+     */
+    public Status statusOf(String name) {
+        for (Status status : Status.values()) {
+            if (edges.get(status).contains(name)) return status;
+        }
+        return null;
+    }
+
+    public Set<String> namesWith(Status status) {
+        return Collections.unmodifiableSet(edges.get(status));
+    }
+
+    /**
+     * The row for {@code name}, or {@code null} if it is not in the list.
+     */
+    public FriendEntry entry(String name) {
+        return entriesByName.get(name);
+    }
+
+    public ObservableList<FriendEntry> getEntries() {
+        return entries;
+    }
+
+    private void put(String name, Status status) {
+        edges.values().forEach(names -> names.remove(name));
+        edges.get(status).add(name);
+        refreshEntries();
+    }
+
+    /**
+     * Brings the rows in line with the sets and summaries, reusing existing entries and only
+     * replacing the list contents when a friend was added, removed or moved.
+     */
+    private void refreshEntries() {
+        Map<String, Status> byName = new TreeMap<>(); // sorted by name, the order among quiet conversations
+        for (Status status : Status.values()) {
+            for (String name : edges.get(status)) {
+                byName.putIfAbsent(name, status);
+            }
+        }
+
+        entriesByName.keySet().retainAll(byName.keySet());
+        List<FriendEntry> rows = new ArrayList<>(byName.size());
+        byName.forEach((name, status) -> {
+            FriendEntry entry = entriesByName.computeIfAbsent(name, n -> new FriendEntry(n, status));
+            entry.setStatus(status);
+            applySummary(entry, summaries.get(name));
+            rows.add(entry);
+        });
+        rows.sort(Comparator.comparingLong(FriendEntry::getLastActivity).reversed()); // stable: ties stay by name
+
+        if (!rows.equals(entries)) {
+            entries.setAll(rows);
+        }
+    }
+
+    private void applySummary(FriendEntry entry, ConversationSummary.Summary summary) {
+        if (summary == null) {
+            entry.setUnreadCount(0);
+            entry.setPreview("");
+            entry.setLastActivity(0);
+            return;
+        }
+
+        String preview = summary.preview() == null ? "" : summary.preview();
+        entry.setUnreadCount(summary.unreadCount());
+        entry.setPreview(owner.equals(summary.lastSender()) && !preview.isEmpty() ? "You: " + preview : preview);
+        entry.setLastActivity(summary.lastAt() == null ? 0 : summary.lastAt().getTime());
+    }
+}
@@ -0,0 +1,99 @@
+package com.chatapp.yahoochatapp;
+
+import javafx.beans.binding.Bindings;
+import javafx.geometry.Pos;
+import javafx.scene.control.ContextMenu;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.MenuItem;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.VBox;
+
+/**
+ * Recycled cell for the friends list. Built once; {@link #updateItem} only rebinds the labels
+ * to the {@link FriendEntry} shown, so a new unread count or accepted request repaints the
+ * badge without touching the list's items.
+ */
+public class FriendListCell extends ListCell<FriendEntry> {
+
+    /**
+     * What the right-click menu does; implemented by the controller.
+     */
+    public interface Actions {
+        void remove(FriendEntry friend);
+
+        void accept(FriendEntry friend);
+    }
+
+    private final Label nameLabel = new Label();
+    private final Label statusLabel = new Label();
+    private final Label badgeLabel = new Label();
+    private final Label previewLabel = new Label();
+    private final VBox row = new VBox(new HBox(4, nameLabel, statusLabel, badgeLabel), previewLabel);
+
+    private final ContextMenu contextMenu = new ContextMenu();
+    private final MenuItem acceptItem = new MenuItem("Accept Friend Request");
+
+    private FriendEntry boundEntry;
+
+    public FriendListCell(Actions actions) {
+        row.setAlignment(Pos.CENTER_LEFT);
+        previewLabel.setStyle("-fx-font-size: 10px; -fx-text-fill: gray;");
+        previewLabel.setMaxWidth(180);
+
+        MenuItem removeItem = new MenuItem("Remove Friend");
+        removeItem.setOnAction(event -> actions.remove(getItem()));
+        acceptItem.setOnAction(event -> actions.accept(getItem())); // ✅ Only visible for incoming requests
+        contextMenu.getItems().addAll(removeItem, acceptItem);
+
+        setText(null);
+    }
+
+    @Override
+    protected void updateItem(FriendEntry friend, boolean empty) {
+        super.updateItem(friend, empty);
+        unbind();
+
+        if (empty || friend == null) {
+            setGraphic(null);
+            setContextMenu(null);
+            return;
+        }
+
+        boundEntry = friend;
+        nameLabel.setText(friend.getName());
+        statusLabel.textProperty().bind(Bindings.createStringBinding(() -> statusText(friend.getStatus()), friend.statusProperty()));
+        badgeLabel.textProperty().bind(Bindings.format("🔵 (%d)", friend.unreadCountProperty()));
+        badgeLabel.visibleProperty().bind(friend.unreadCountProperty().greaterThan(0));
+        badgeLabel.managedProperty().bind(badgeLabel.visibleProperty());
+        acceptItem.visibleProperty().bind(friend.statusProperty().isEqualTo(FriendGraph.Status.PENDING_REQUEST));
+        previewLabel.textProperty().bind(friend.previewProperty());
+        previewLabel.visibleProperty().bind(friend.previewProperty().isNotEmpty());
+        previewLabel.managedProperty().bind(previewLabel.visibleProperty());
+
+        setGraphic(row);
+        setContextMenu(contextMenu);
+    }
+
+    private void unbind() {
+        if (boundEntry == null) return;
+
+        statusLabel.textProperty().unbind();
+        badgeLabel.textProperty().unbind();
+        badgeLabel.visibleProperty().unbind();
+        badgeLabel.managedProperty().unbind();
+        acceptItem.visibleProperty().unbind();
+        previewLabel.textProperty().unbind();
+        previewLabel.visibleProperty().unbind();
+        previewLabel.managedProperty().unbind();
+        boundEntry = null;
+    }
+
+    private static String statusText(FriendGraph.Status status) {
+        return switch (status) {
+            case ACCEPTED -> "";
+            case PENDING_REQUEST -> "(Pending Request)";
+            case REQUESTED -> "(Requested)";
+        };
+    }
+}
@@ -0,0 +1,151 @@
+package com.chatapp.yahoochatapp;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Friend list and friend request queries. Every method runs off the JavaFX thread.
+ */
+public class FriendRepository {
+
+    // friends.status codes
+    static final int PENDING = 0;
+    static final int ACCEPTED = 1;
+
+    static final String FRIEND_EDGES = "SELECT friend_id AS other, status, 1 AS outgoing FROM friends WHERE user_id = ? " +
+            "UNION ALL SELECT user_id AS other, status, 0 AS outgoing FROM friends WHERE friend_id = ?";
+
+    /**
+     * Every edge touching {@code currentUser}, grouped by status, in one round trip. Each branch of
+     * the UNION is answered from one of the friends indexes. A name with several rows ends up
+     * in one set only: accepted wins over an incoming request, which wins over an outgoing one.
+     */
+    public static CompletableFuture<Map<FriendGraph.Status, Set<String>>> loadFriendEdges(String currentUser) {
+        return DataAccess.supply(() -> {
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(FRIEND_EDGES)) {
+
+                int userId = UserDirectory.idOf(conn, currentUser);
+                pstmt.setInt(1, userId);
+                pstmt.setInt(2, userId);
+
+                Map<Integer, FriendGraph.Status> byId = new HashMap<>();
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        FriendGraph.Status status;
+                        if (rs.getInt("status") != PENDING) {
+                            status = FriendGraph.Status.ACCEPTED;
+                        } else if (rs.getInt("outgoing") == 1) {
+                            status = FriendGraph.Status.REQUESTED; // the logged-in user sent the request
+                        } else {
+                            status = FriendGraph.Status.PENDING_REQUEST; // the logged-in user received it
+                        }
+                        // Enum order is the precedence order
+                        byId.merge(rs.getInt("other"), status, (a, b) -> a.compareTo(b) <= 0 ? a : b);
+                    }
+                }
+
+                Map<Integer, String> names = UserDirectory.namesOf(conn, byId.keySet());
+                Map<FriendGraph.Status, Set<String>> edges = new EnumMap<>(FriendGraph.Status.class);
+                byId.forEach((id, status) -> {
+                    String name = names.get(id);
+                    if (name != null) edges.computeIfAbsent(status, s -> new HashSet<>()).add(name);
+                });
+                return edges;
+            }
+        });
+    }
+
+    /**
+     * Stores a pending request; completes with {@code false} if the pair already has a row.
+     */
+    public static CompletableFuture<Boolean> sendFriendRequest(String currentUser, String friendUsername) {
+        return insertIfAbsent(currentUser, friendUsername, PENDING);
+    }
+
+    /**
+     * Adds an accepted friendship; completes with {@code false} if the row already exists.
+     */
+    public static CompletableFuture<Boolean> addFriend(String currentUser, String friendUsername) {
+        return insertIfAbsent(currentUser, friendUsername, ACCEPTED);
+    }
+
+    /**
+     * Removes the friendship (or request) whichever side created it.
+     */
+    public static CompletableFuture<Boolean> removeFriend(String currentUser, String friendUsername) {
+        return DataAccess.supply(() -> {
+            String query = "DELETE FROM friends WHERE (user_id = ? AND friend_id = ?) OR (user_id = ? AND friend_id = ?)";
+
+            try (Connection conn = DatabaseConnection.getConnection()) {
+                int userId = UserDirectory.idOf(conn, currentUser);
+                int friendId = UserDirectory.idOf(conn, friendUsername);
+                return DataAccess.inTransaction(conn, () -> {
+                    try (PreparedStatement pstmt = conn.prepareStatement(query)) {
+                        pstmt.setInt(1, userId);
+                        pstmt.setInt(2, friendId);
+                        pstmt.setInt(3, friendId);
+                        pstmt.setInt(4, userId);
+                        if (pstmt.executeUpdate() == 0) return false;
+                    }
+                    ChatEvents.record(conn, ChatEvents.FRIEND, 0, currentUser, friendUsername);
+                    return true;
+                });
+            }
+        });
+    }
+
+    public static CompletableFuture<Boolean> acceptFriendRequest(String requester, String currentUser) {
+        return DataAccess.supply(() -> {
+            String query = "UPDATE friends SET status = " + ACCEPTED + " WHERE user_id = ? AND friend_id = ? AND status = " + PENDING;
+
+            try (Connection conn = DatabaseConnection.getConnection()) {
+                int requesterId = UserDirectory.idOf(conn, requester);
+                int userId = UserDirectory.idOf(conn, currentUser);
+                return DataAccess.inTransaction(conn, () -> {
+                    try (PreparedStatement pstmt = conn.prepareStatement(query)) {
+                        pstmt.setInt(1, requesterId);
+                        pstmt.setInt(2, userId);
+                        if (pstmt.executeUpdate() == 0) return false;
+                    }
+                    ChatEvents.record(conn, ChatEvents.FRIEND, 0, currentUser, requester);
+                    return true;
+                });
+            }
+        });
+    }
+
+    /**
+     * Single-statement insert; the unique (user_id, friend_id) key turns a duplicate into a no-op.
+     * Completes with {@code false} as well if either user does not exist.
+     */
+    private static CompletableFuture<Boolean> insertIfAbsent(String user, String friend, int status) {
+        return DataAccess.supply(() -> {
+            String query = "INSERT IGNORE INTO friends (user_id, friend_id, status) VALUES (?, ?, ?)";
+
+            try (Connection conn = DatabaseConnection.getConnection()) {
+                int userId = UserDirectory.idOf(conn, user);
+                int friendId = UserDirectory.idOf(conn, friend);
+                if (userId == 0 || friendId == 0) return false;
+
+                return DataAccess.inTransaction(conn, () -> {
+                    try (PreparedStatement pstmt = conn.prepareStatement(query)) {
+                        pstmt.setInt(1, userId);
+                        pstmt.setInt(2, friendId);
+                        pstmt.setInt(3, status);
+                        if (pstmt.executeUpdate() == 0) return false;
+                    }
+                    ChatEvents.record(conn, ChatEvents.FRIEND, 0, user, friend);
+                    return true;
+                });
+            }
+        });
+    }
+}
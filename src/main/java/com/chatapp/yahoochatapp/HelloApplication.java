@@ -6,10 +6,29 @@ import javafx.scene.Scene;
 import javafx.stage.Stage;
 
 import java.io.IOException;
+import java.sql.SQLException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 public class HelloApplication extends Application {
+
+    private static final long RELEASE_TIMEOUT_SECONDS = 5;
+
+    @Override
+    public void init() throws SQLException {
+        // Runs on the launcher thread, before any window (and before JDBC is forbidden on the FX thread).
+        // A failure aborts the launch: nothing below works against a schema that is not fully migrated.
+        SchemaMigrator.migrate();
+        MessageIds.claimNode(); // unique per running client, so message ids never collide
+        QueryPlanCheck.run();
+        Outbox.start(); // replays messages a previous run could not store
+    }
+
     @Override
     public void start(Stage stage) throws IOException {
+        DatabaseConnection.forbidThread(Thread.currentThread()); // all JDBC goes through DataAccess
+
         FXMLLoader fxmlLoader = new FXMLLoader(HelloApplication.class.getResource("login-view.fxml"));
         Scene scene = new Scene(fxmlLoader.load(), 400, 800);
         stage.setTitle("Login - Chat App");
@@ -17,6 +36,23 @@ public class HelloApplication extends Application {
         stage.show();
     }
 
+    @Override
+    public void stop() {
+        try {
+            ChatPushClient.disconnect();
+            RefreshScheduler.shutdown();
+            Outbox.shutdown(); // unsent messages stay journaled for the next start
+            WriteBehindQueue.shutdownAll(); // flush messages still waiting for their batch
+            MessageIds.releaseNode().get(RELEASE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException | ExecutionException | TimeoutException e) {
+            e.printStackTrace(); // the node lease simply runs out
+        } finally {
+            // Always reached, so the pool's connections are closed even if a step above failed
+            DataAccess.shutdown();
+            DatabaseConnection.shutdown();
+        }
+    }
+
     public static void main(String[] args) {
         launch();
     }
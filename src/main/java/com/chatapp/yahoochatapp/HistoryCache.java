@@ -0,0 +1,412 @@
+package com.chatapp.yahoochatapp;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+/**
+ * Per-user on-disk cache of chat history, so a window can render what it showed last time before
+ * the database answers and then fetch only what changed since. Only public history is cached:
+ * the files are not encrypted, so private conversations never go to disk.
+ *
+ * Each conversation is a directory of append-only segment files under
+ * {@code chatapp.cache.dir} (by default {@code ~/.yahoochatapp/cache}), one level per user.
+ * Directories and segments are readable by their owner only (where the file system supports
+ * POSIX permissions), and a user's directory is deleted when they log out.
+ * A segment is a magic number and a kind byte followed by length-prefixed binary records; a later
+ * record for the same message id replaces an earlier one, and a deleted flag removes it. Segments
+ * are read through memory-mapped buffers.
+ *
+ * A full load and a compaction write a base segment holding only the live rows; readers start at
+ * the newest base segment and ignore everything before it, so an older segment whose delete
+ * failed can never bring back a row the base no longer has. Appends go into delta segments, and
+ * a torn tail left by an interrupted append is cut off before the next one. Once a conversation
+ * has more than a few segments it is compacted in the background. The whole cache is kept under
+ * {@code chatapp.cache.maxBytes} (64 MB by default) by dropping the conversations that were
+ * written least recently.
+ */
+public class HistoryCache {
+
+    /**
+     * One cached message; {@code updatedAt} is in epoch milliseconds.
+     */
+    public record CachedMessage(int id, String sender, String text, boolean deleted, long updatedAt, int version) {
+    }
+
+    private static final Path ROOT = Paths.get(System.getProperty("chatapp.cache.dir",
+            Paths.get(System.getProperty("user.home"), ".yahoochatapp", "cache").toString()));
+    private static final long MAX_BYTES = Math.max(1 << 20, Long.getLong("chatapp.cache.maxBytes", 64L << 20));
+    private static final long SEGMENT_BYTES = 256 * 1024; // appends start a new segment past this size
+    private static final int MAX_SEGMENTS = 4;            // more than this triggers a compaction
+    private static final int MAGIC = 0x59434832;          // "YCH2"; "YCH1" segments had no kind byte
+    private static final byte BASE = 1;                    // supersedes every older segment
+    private static final byte DELTA = 0;                   // changes on top of the segments before it
+    private static final int HEADER_BYTES = Integer.BYTES + 1;
+    private static final String SUFFIX = ".seg";
+    private static final Set<PosixFilePermission> OWNER_DIRECTORY = PosixFilePermissions.fromString("rwx------");
+    private static final Set<PosixFilePermission> OWNER_FILE = PosixFilePermissions.fromString("rw-------");
+
+    private static final ExecutorService compactor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "history-cache-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * The cached live rows of a conversation in id order; empty if nothing is cached.
+     */
+    public static synchronized List<CachedMessage> read(String user, String conversation) {
+        try {
+            return new ArrayList<>(readLive(directory(user, conversation)).values());
+        } catch (IOException e) {
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Replaces the conversation with exactly these rows (e.g. after a full load).
+     */
+    public static synchronized void replace(String user, String conversation, List<CachedMessage> rows) {
+        Path dir = directory(user, conversation);
+        try {
+            createPrivateDirectories(dir);
+            List<Path> old = segments(dir);
+            writeSegment(dir.resolve(segmentName(nextNumber(old))), rows);
+            deleteAll(old);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        scheduleMaintenance(dir);
+    }
+
+    /**
+     * Records new, edited and deleted rows.
+     */
+    public static synchronized void append(String user, String conversation, List<CachedMessage> rows) {
+        if (rows.isEmpty()) return;
+
+        Path dir = directory(user, conversation);
+        try {
+            createPrivateDirectories(dir);
+            List<Path> existing = segments(dir);
+            Path target = existing.isEmpty() || Files.size(existing.get(existing.size() - 1)) >= SEGMENT_BYTES
+                    ? dir.resolve(segmentName(nextNumber(existing)))
+                    : existing.get(existing.size() - 1);
+
+            if (Files.exists(target) && !cutTornTail(target)) {
+                target = dir.resolve(segmentName(nextNumber(existing))); // unusable: carry on in a new segment
+            }
+
+            boolean fresh = !Files.exists(target);
+            try (FileChannel channel = FileChannel.open(target, Set.of(StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND), ownerOnly())) {
+                writeFully(channel, encode(rows, fresh ? DELTA : -1));
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        scheduleMaintenance(dir);
+    }
+
+    /**
+     * Deletes everything cached for the user, e.g. on logout, so the next person at this machine
+     * cannot read it. Runs in the background after any maintenance already queued.
+     */
+    public static void clear(String user) {
+        compactor.execute(() -> deleteUser(user));
+    }
+
+    private static synchronized void deleteUser(String user) {
+        Path dir = ROOT.resolve(HexFormat.of().formatHex(utf8(user)));
+        if (!Files.isDirectory(dir)) return;
+
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) { // children before their directory
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            System.err.println("Could not delete the history cache of " + user + ": " + e.getMessage());
+        }
+    }
+
+    private static void scheduleMaintenance(Path dir) {
+        compactor.execute(() -> {
+            compactIfNeeded(dir);
+            enforceSizeCap();
+        });
+    }
+
+    private static synchronized void compactIfNeeded(Path dir) {
+        try {
+            List<Path> old = segments(dir);
+            if (old.size() <= MAX_SEGMENTS) return;
+
+            // A base segment numbered after the ones it replaces, so they are ignored even if a delete fails
+            Map<Integer, CachedMessage> live = readLive(dir);
+            writeSegment(dir.resolve(segmentName(nextNumber(old))), new ArrayList<>(live.values()));
+            deleteAll(old);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Drops whole conversations, least recently written first
+    private static synchronized void enforceSizeCap() {
+        if (!Files.isDirectory(ROOT)) return;
+
+        record Conversation(Path dir, long bytes, long lastWritten) {
+        }
+        List<Conversation> conversations = new ArrayList<>();
+        long total = 0;
+        try (DirectoryStream<Path> users = Files.newDirectoryStream(ROOT)) {
+            for (Path user : users) {
+                if (!Files.isDirectory(user)) continue;
+                try (DirectoryStream<Path> dirs = Files.newDirectoryStream(user)) {
+                    for (Path dir : dirs) {
+                        long bytes = 0;
+                        long lastWritten = 0;
+                        for (Path segment : segments(dir)) {
+                            bytes += Files.size(segment);
+                            lastWritten = Math.max(lastWritten, Files.getLastModifiedTime(segment).toMillis());
+                        }
+                        conversations.add(new Conversation(dir, bytes, lastWritten));
+                        total += bytes;
+                    }
+                }
+            }
+
+            conversations.sort(Comparator.comparingLong(Conversation::lastWritten));
+            for (Conversation conversation : conversations) {
+                if (total <= MAX_BYTES) break;
+                deleteAll(segments(conversation.dir()));
+                total -= conversation.bytes();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static Map<Integer, CachedMessage> readLive(Path dir) throws IOException {
+        List<Path> segments = segments(dir);
+        int start = 0;
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            if (kindOf(segments.get(i)) == BASE) {
+                start = i;
+                break;
+            }
+        }
+
+        Map<Integer, CachedMessage> live = new TreeMap<>();
+        for (Path segment : segments.subList(start, segments.size())) {
+            try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+                if (channel.size() < HEADER_BYTES) continue;
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                if (buffer.getInt() != MAGIC) continue; // not ours, or from another format version
+                buffer.get(); // kind
+                readRecords(buffer, live);
+            }
+        }
+        return live;
+    }
+
+    // BASE, DELTA, or -1 for a segment that is not in this format
+    private static int kindOf(Path segment) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            ByteBuffer header = readFully(channel, ByteBuffer.allocate(HEADER_BYTES));
+            if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC) return -1;
+            return header.get();
+        }
+    }
+
+    /**
+     * Truncates the segment after its last complete record; {@code false} if it is not a segment
+     * in this format or cannot be truncated (e.g. a mapping of it is still alive on Windows).
+     */
+    private static boolean cutTornTail(Path segment) {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = readFully(channel, ByteBuffer.allocate((int) channel.size())); // about SEGMENT_BYTES at most
+            if (buffer.remaining() < HEADER_BYTES || buffer.getInt() != MAGIC) return false;
+            buffer.get(); // kind
+
+            int validEnd = readRecords(buffer, new TreeMap<>());
+            if (validEnd < channel.size()) {
+                System.err.println("Cutting torn tail of cache segment " + segment + " at byte " + validEnd);
+                channel.truncate(validEnd);
+            }
+            return true;
+        } catch (IOException e) {
+            System.err.println("Could not repair cache segment " + segment + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    // Returns the position just past the last complete record
+    private static int readRecords(ByteBuffer buffer, Map<Integer, CachedMessage> live) {
+        while (buffer.remaining() >= Integer.BYTES) {
+            int recordStart = buffer.position();
+            int length = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining()) return recordStart; // torn tail of an interrupted append
+
+            ByteBuffer record = buffer.slice(buffer.position(), length);
+            buffer.position(buffer.position() + length);
+            try {
+                int id = record.getInt();
+                boolean deleted = record.get() == 1;
+                long updatedAt = record.getLong();
+                int version = record.getInt();
+                String sender = readString(record);
+                String text = readString(record);
+                if (deleted) {
+                    live.remove(id);
+                } else {
+                    live.put(id, new CachedMessage(id, sender, text, false, updatedAt, version));
+                }
+            } catch (BufferUnderflowException | IllegalArgumentException e) {
+                return recordStart; // damaged record: keep what was read before it
+            }
+        }
+        return buffer.position();
+    }
+
+    // kind is BASE or DELTA for a new segment (written with a header), or -1 to append records only
+    private static ByteBuffer encode(List<CachedMessage> rows, byte kind) {
+        List<byte[]> records = new ArrayList<>(rows.size());
+        int size = kind >= 0 ? HEADER_BYTES : 0;
+        for (CachedMessage row : rows) {
+            byte[] sender = utf8(row.sender());
+            byte[] text = utf8(row.text());
+            ByteBuffer record = ByteBuffer.allocate(Integer.BYTES + Integer.BYTES + 1 + Long.BYTES + Integer.BYTES
+                    + Integer.BYTES + sender.length + Integer.BYTES + text.length);
+            record.putInt(record.capacity() - Integer.BYTES)
+                    .putInt(row.id())
+                    .put((byte) (row.deleted() ? 1 : 0))
+                    .putLong(row.updatedAt())
+                    .putInt(row.version())
+                    .putInt(sender.length).put(sender)
+                    .putInt(text.length).put(text);
+            records.add(record.array());
+            size += record.capacity();
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        if (kind >= 0) buffer.putInt(MAGIC).put(kind);
+        records.forEach(buffer::put);
+        return buffer.flip();
+    }
+
+    // Written under a temporary name and moved into place, so readers never see half a segment
+    private static void writeSegment(Path segment, List<CachedMessage> rows) throws IOException {
+        Path temp = segment.resolveSibling(segment.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, Set.of(StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING), ownerOnly())) {
+            writeFully(channel, encode(rows.stream().filter(row -> !row.deleted()).toList(), BASE));
+        }
+        Files.move(temp, segment, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Reads until the buffer is full or the file ends; returns it flipped
+    private static ByteBuffer readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+            // keep reading
+        }
+        return buffer.flip();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static String readString(ByteBuffer record) {
+        int length = record.getInt();
+        if (length < 0 || length > record.remaining()) throw new IllegalArgumentException("Bad string length " + length);
+        byte[] bytes = new byte[length];
+        record.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] utf8(String value) {
+        return (value == null ? "" : value).getBytes(StandardCharsets.UTF_8);
+    }
+
+    // Also tightens directories an older version created with the default permissions
+    private static void createPrivateDirectories(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        if (!isPosix()) return;
+        for (Path path = dir; path != null && path.startsWith(ROOT); path = path.getParent()) {
+            Files.setPosixFilePermissions(path, OWNER_DIRECTORY);
+        }
+    }
+
+    // For creating segments; older ones are covered by their directory being owner-only
+    private static FileAttribute<?>[] ownerOnly() {
+        return isPosix() ? new FileAttribute<?>[]{PosixFilePermissions.asFileAttribute(OWNER_FILE)} : new FileAttribute<?>[0];
+    }
+
+    private static boolean isPosix() {
+        return ROOT.getFileSystem().supportedFileAttributeViews().contains("posix");
+    }
+
+    // Names are hex encoded, so any username is a safe directory name
+    private static Path directory(String user, String conversation) {
+        HexFormat hex = HexFormat.of();
+        return ROOT.resolve(hex.formatHex(utf8(user))).resolve(hex.formatHex(utf8(conversation)));
+    }
+
+    // Oldest first
+    private static List<Path> segments(Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) return new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(SUFFIX))
+                    .sorted(Comparator.comparing(file -> file.getFileName().toString()))
+                    .toList();
+        }
+    }
+
+    private static int nextNumber(List<Path> segments) {
+        if (segments.isEmpty()) return 1;
+        String last = segments.get(segments.size() - 1).getFileName().toString();
+        return Integer.parseInt(last.substring(0, last.length() - SUFFIX.length())) + 1;
+    }
+
+    private static String segmentName(int number) {
+        return String.format("%08d%s", number, SUFFIX);
+    }
+
+    // Best effort: on some platforms a file stays locked while a mapping of it is alive
+    private static void deleteAll(List<Path> segments) {
+        for (Path segment : segments) {
+            try {
+                Files.deleteIfExists(segment);
+            } catch (IOException e) {
+                System.err.println("Could not delete cache segment " + segment + ": " + e.getMessage());
+            }
+        }
+    }
+}
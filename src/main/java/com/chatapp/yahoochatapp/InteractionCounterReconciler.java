@@ -0,0 +1,92 @@
+package com.chatapp.yahoochatapp;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically recomputes {@code like_count} / {@code comment_count} on {@code public_messages}
+ * from {@code message_interactions} and fixes rows that drifted (manual edits, interaction rows
+ * deleted with the message, a writer that died between statements).
+ *
+ * Works through the table in primary-key ranges so each UPDATE only locks a small slice.
+ * Interval and range size come from {@code chatapp.counters.reconcileMinutes} and
+ * {@code chatapp.counters.reconcileChunk}.
+ */
+public class InteractionCounterReconciler {
+
+    private static final long INTERVAL_MINUTES = Math.max(1, Long.getLong("chatapp.counters.reconcileMinutes", 15));
+    private static final int CHUNK_SIZE = Math.max(100, Integer.getInteger("chatapp.counters.reconcileChunk", 5_000));
+
+    private static final String REPAIR_RANGE =
+            "UPDATE public_messages p " +
+            "LEFT JOIN (SELECT message_id, SUM(type = " + InteractionSnapshot.LIKE + ") AS likes, SUM(type = " + InteractionSnapshot.COMMENT + ") AS comments " +
+            "           FROM message_interactions WHERE message_id BETWEEN ? AND ? GROUP BY message_id) i " +
+            "       ON i.message_id = p.id " +
+            "SET p.like_count = COALESCE(i.likes, 0), p.comment_count = COALESCE(i.comments, 0) " +
+            "WHERE p.id BETWEEN ? AND ? " +
+            "  AND (p.like_count <> COALESCE(i.likes, 0) OR p.comment_count <> COALESCE(i.comments, 0))";
+
+    private static ScheduledExecutorService scheduler;
+
+    public static synchronized void start() {
+        if (scheduler != null) return;
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "counter-reconciler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(InteractionCounterReconciler::runSafely, 1, INTERVAL_MINUTES, TimeUnit.MINUTES);
+    }
+
+    public static synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    private static void runSafely() {
+        try {
+            int repaired = reconcileAll();
+            if (repaired > 0) {
+                System.out.println("Counter reconciler repaired " + repaired + " public message(s).");
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Repairs every drifted row; returns how many rows were changed.
+     */
+    public static int reconcileAll() throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            long maxId;
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(id), 0) FROM public_messages")) {
+                rs.next();
+                maxId = rs.getLong(1);
+            }
+
+            int repaired = 0;
+            try (PreparedStatement pstmt = conn.prepareStatement(REPAIR_RANGE)) {
+                for (long from = 1; from <= maxId; from += CHUNK_SIZE) {
+                    long to = from + CHUNK_SIZE - 1;
+                    pstmt.setLong(1, from);
+                    pstmt.setLong(2, to);
+                    pstmt.setLong(3, from);
+                    pstmt.setLong(4, to);
+                    repaired += pstmt.executeUpdate();
+                }
+            }
+            return repaired;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.chatapp.yahoochatapp;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Likes, comments and sender avatars for a batch of public messages, loaded with a handful of
+ * set-based queries instead of several queries per rendered bubble.
+ */
+public class InteractionSnapshot {
+
+    // message_interactions.type codes (see V10 migration)
+    static final int LIKE = 1;
+    static final int COMMENT = 2;
+
+    // Keeps the IN (...) lists well below packet and placeholder limits
+    private static final int CHUNK_SIZE = 500;
+
+    private final Map<Integer, Integer> likeCounts = new HashMap<>();
+    private final Map<Integer, Integer> commentCounts = new HashMap<>();
+    private final Set<Integer> likedByViewer = new HashSet<>();
+    private final Map<Integer, List<Comment>> comments = new HashMap<>();
+    private final Map<String, String> avatarPaths = new HashMap<>();
+
+    public record Comment(String user, String text) {
+    }
+
+    private InteractionSnapshot() {
+    }
+
+    public static InteractionSnapshot empty() {
+        return new InteractionSnapshot();
+    }
+
+    /**
+     * Snapshot for a bubble that is not saved yet: no interactions, avatar already known.
+     */
+    public static InteractionSnapshot forSender(String sender, String avatarPath) {
+        InteractionSnapshot snapshot = new InteractionSnapshot();
+        if (avatarPath != null) {
+            snapshot.avatarPaths.put(sender, avatarPath);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Loads interaction data for the given messages as seen by {@code viewer}, plus the
+     * profile picture of every sender in {@code senders}.
+     */
+    public static InteractionSnapshot load(Collection<Integer> messageIds, Collection<String> senders, String viewer) {
+        InteractionSnapshot snapshot = new InteractionSnapshot();
+        List<Integer> ids = new ArrayList<>(new LinkedHashSet<>(messageIds));
+        ids.removeIf(id -> id == null || id < 0); // unsaved bubbles have no interactions yet
+        List<String> users = new ArrayList<>(new LinkedHashSet<>(senders));
+
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            for (int from = 0; from < ids.size(); from += CHUNK_SIZE) {
+                List<Integer> chunk = ids.subList(from, Math.min(from + CHUNK_SIZE, ids.size()));
+                snapshot.loadCounters(conn, chunk);
+                snapshot.loadViewerLikes(conn, chunk, viewer);
+                snapshot.loadComments(conn, chunk);
+            }
+            for (int from = 0; from < users.size(); from += CHUNK_SIZE) {
+                snapshot.loadAvatars(conn, users.subList(from, Math.min(from + CHUNK_SIZE, users.size())));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+
+        return snapshot;
+    }
+
+    public int getLikeCount(int messageId) {
+        return likeCounts.getOrDefault(messageId, 0);
+    }
+
+    public boolean isLikedByViewer(int messageId) {
+        return likedByViewer.contains(messageId);
+    }
+
+    public List<Comment> getComments(int messageId) {
+        return comments.getOrDefault(messageId, Collections.emptyList());
+    }
+
+    public int getCommentCount(int messageId) {
+        return commentCounts.getOrDefault(messageId, 0);
+    }
+
+    public String getAvatarPath(String username) {
+        return avatarPaths.get(username);
+    }
+
+    // Denormalized totals kept on public_messages (see V4 migration), read by primary key
+    private void loadCounters(Connection conn, List<Integer> ids) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(countersQuery(ids.size()))) {
+            for (int i = 0; i < ids.size(); i++) {
+                pstmt.setInt(i + 1, ids.get(i));
+            }
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    int messageId = rs.getInt("id");
+                    likeCounts.put(messageId, rs.getInt("like_count"));
+                    commentCounts.put(messageId, rs.getInt("comment_count"));
+                }
+            }
+        }
+    }
+
+    private void loadViewerLikes(Connection conn, List<Integer> ids, String viewer) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(viewerLikesQuery(ids.size()))) {
+            for (int i = 0; i < ids.size(); i++) {
+                pstmt.setInt(i + 1, ids.get(i));
+            }
+            pstmt.setInt(ids.size() + 1, UserDirectory.idOf(conn, viewer));
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    likedByViewer.add(rs.getInt("message_id"));
+                }
+            }
+        }
+    }
+
+    private void loadComments(Connection conn, List<Integer> ids) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(commentsQuery(ids.size()))) {
+            for (int i = 0; i < ids.size(); i++) {
+                pstmt.setInt(i + 1, ids.get(i));
+            }
+
+            List<Integer> messageIds = new ArrayList<>();
+            List<Integer> userIds = new ArrayList<>();
+            List<String> texts = new ArrayList<>();
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    messageIds.add(rs.getInt("message_id"));
+                    userIds.add(rs.getInt("user_id"));
+                    texts.add(rs.getString("comment_text"));
+                }
+            }
+
+            Map<Integer, String> names = UserDirectory.namesOf(conn, userIds);
+            for (int i = 0; i < messageIds.size(); i++) {
+                comments.computeIfAbsent(messageIds.get(i), id -> new ArrayList<>())
+                        .add(new Comment(names.getOrDefault(userIds.get(i), "Unknown"), texts.get(i)));
+            }
+        }
+    }
+
+    private void loadAvatars(Connection conn, List<String> users) throws SQLException {
+        String query = "SELECT username, profile_picture FROM users WHERE username IN (" + placeholders(users.size()) + ")";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(query)) {
+            for (int i = 0; i < users.size(); i++) {
+                pstmt.setString(i + 1, users.get(i));
+            }
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    avatarPaths.put(rs.getString("username"), rs.getString("profile_picture"));
+                }
+            }
+        }
+    }
+
+    // The statements below are shared with QueryPlanCheck so it EXPLAINs what actually runs
+    static String countersQuery(int ids) {
+        return "SELECT id, like_count, comment_count FROM public_messages WHERE id IN (" + placeholders(ids) + ")";
+    }
+
+    static String viewerLikesQuery(int ids) {
+        return "SELECT message_id FROM message_interactions " +
+                "WHERE message_id IN (" + placeholders(ids) + ") AND type = " + LIKE + " AND user_id = ?";
+    }
+
+    static String commentsQuery(int ids) {
+        return "SELECT message_id, user_id, comment_text FROM message_interactions " +
+                "WHERE type = " + COMMENT + " AND message_id IN (" + placeholders(ids) + ") " +
+                "ORDER BY message_id, timestamp ASC";
+    }
+
+    static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+}
@@ -11,13 +11,9 @@ import javafx.scene.control.PasswordField;
 import javafx.scene.control.TextField;
 
 import java.io.IOException;
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
 
 import javafx.stage.Stage;
-import org.mindrot.jbcrypt.BCrypt;
 
 public class LoginController {
 
@@ -53,44 +49,28 @@ public class LoginController {
             return;
         }
 
-        // Check credentials in the database
-        if (validateLogin(username, password)) {
-            // 🔥 Store the logged-in user in SessionManager
-            SessionManager.setUser(username);
-
-            loadDashboard();
-
-        } else {
-            showAlert(Alert.AlertType.ERROR, "Login Failed", "Invalid username or password.");
-        }
-    }
-
-    private boolean validateLogin(String username, String password) {
-        // Fetch the profile picture from the database
-        String query = "SELECT password, profile_picture FROM users WHERE username = ?";
-
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(query)) {
-
-            pstmt.setString(1, username);
-            ResultSet rs = pstmt.executeQuery();
-
-            if (rs.next()) { // If user exists
-                String storedHashedPassword = rs.getString("password");
-                String profilePicturePath = rs.getString("profile_picture"); // Retrieve profile pic
-
-                // Check password
-                if (BCrypt.checkpw(password, storedHashedPassword)) {
-                    SessionManager.setUser(username);
-                    SessionManager.setProfilePicture(profilePicturePath); // Store in session
-                    return true;
-                }
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return false;
-
+        // Check credentials in the database (off the UI thread; bcrypt is slow on purpose)
+        loginButton.setDisable(true);
+        UserRepository.validateLogin(username, password)
+                .exceptionally(error -> {
+                    DataAccess.logFailure(error);
+                    return new UserRepository.LoginResult(false, null, null);
+                })
+                .thenAcceptAsync(result -> {
+                    loginButton.setDisable(false);
+                    if (result.success()) {
+                        // 🔥 Store the logged-in user in SessionManager
+                        SessionManager.setUser(username);
+                        SessionManager.setProfilePicture(result.profilePicture()); // Store in session
+                        SessionManager.setPushToken(result.pushToken());
+                        ChatPushClient.connect(username, result.pushToken()); // 🔔 Real-time updates from the chat server
+
+                        loadDashboard();
+
+                    } else {
+                        showAlert(Alert.AlertType.ERROR, "Login Failed", "Invalid username or password.");
+                    }
+                }, DataAccess.FX);
     }
 
     @FXML
@@ -104,21 +84,27 @@ public class LoginController {
             return;
         }
 
-        // Check if username already exists
-        if (isUsernameTaken(username)) {
-            showAlert(Alert.AlertType.ERROR, "Sign-Up Failed", "Username is already taken. Try another.");
-            return;
-        }
-
-        // Hash the password before saving (security best practice)
-        String hashedPassword = hashPassword(password);
+        signupButton.setDisable(true);
 
-        // Insert user into the database
-        if (registerUser(username, hashedPassword)) {
-            showAlert(Alert.AlertType.INFORMATION, "Sign-Up Successful", "Account created! You can now log in.");
-        } else {
-            showAlert(Alert.AlertType.ERROR, "Sign-Up Failed", "Something went wrong. Try again.");
-        }
+        // Check if username already exists
+        UserRepository.isUsernameTaken(username)
+                .thenCompose(taken -> taken
+                        ? CompletableFuture.completedFuture((Boolean) null)
+                        : UserRepository.registerUser(username, password)) // Hashed before saving (security best practice)
+                .exceptionally(error -> {
+                    DataAccess.logFailure(error);
+                    return false;
+                })
+                .thenAcceptAsync(registered -> {
+                    signupButton.setDisable(false);
+                    if (registered == null) {
+                        showAlert(Alert.AlertType.ERROR, "Sign-Up Failed", "Username is already taken. Try another.");
+                    } else if (registered) {
+                        showAlert(Alert.AlertType.INFORMATION, "Sign-Up Successful", "Account created! You can now log in.");
+                    } else {
+                        showAlert(Alert.AlertType.ERROR, "Sign-Up Failed", "Something went wrong. Try again.");
+                    }
+                }, DataAccess.FX);
     }
 
     private void showAlert(Alert.AlertType alertType, String title, String message) {
@@ -129,50 +115,19 @@ public class LoginController {
         alert.showAndWait();
     }
 
-    private boolean registerUser(String username, String hashedPassword) {
-        String query = "INSERT INTO users (username, password) VALUES (?, ?)";
-
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(query)) {
-
-            pstmt.setString(1, username);
-            pstmt.setString(2, hashedPassword);
-            int rowsInserted = pstmt.executeUpdate();
-
-            return rowsInserted > 0; // If at least one row was inserted, return true
-
-        } catch (SQLException e) {
-            e.printStackTrace();
-            return false;
-        }
-    }
-
-    private boolean isUsernameTaken(String username) {
-        String query = "SELECT username FROM users WHERE username = ?";
-
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(query)) {
-
-            pstmt.setString(1, username);
-            ResultSet rs = pstmt.executeQuery();
-            return rs.next(); // If there is a result, the username is already taken
-
-        } catch (SQLException e) {
-            e.printStackTrace();
-            return false;
-        }
-    }
-
-
-    private String hashPassword(String plainPassword) {
-        return BCrypt.hashpw(plainPassword, BCrypt.gensalt(12)); // Hash the password with salt
-    }
-
-
     @FXML
     private void handleLogout(ActionEvent event) {
         // Clear the current user session
+        String user = SessionManager.getUser();
+        String pushToken = SessionManager.getPushToken();
         SessionManager.clearSession();
+        ChatPushClient.disconnect();
+        if (user != null) {
+            HistoryCache.clear(user); // nothing of this account stays readable on disk
+        }
+        if (pushToken != null) {
+            UserRepository.revokePushToken(pushToken).exceptionally(DataAccess::logFailure);
+        }
 
         // Show a confirmation alert
         showAlert(Alert.AlertType.INFORMATION, "Logout", "You have been logged out.");
@@ -0,0 +1,166 @@
+package com.chatapp.yahoochatapp;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Snowflake-style 64-bit message ids, generated on the client before a message is sent.
+ *
+ * Layout: 41 bits of milliseconds since 2025-01-01 UTC, 10 bits of node id and a 12-bit
+ * sequence within the millisecond, so ids from one process are strictly increasing and ids from
+ * different processes sort by time. The node id is leased from {@code client_nodes} at startup
+ * (see V12 migration) and renewed while the process runs, so no two running processes share one;
+ * otherwise two clients of the same user could generate the same id and a retried send would be
+ * matched to the other message's row by the {@code (sender_id, client_id)} indexes (see V11).
+ */
+public class MessageIds {
+
+    private static final long EPOCH_MILLIS = 1_735_689_600_000L; // 2025-01-01T00:00:00Z
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final long MAX_SEQUENCE = (1L << SEQUENCE_BITS) - 1;
+
+    private static final long LEASE_MINUTES = 60;
+    private static final long RENEW_MINUTES = 10;
+
+    private static long nodeId = -1; // -1 until claimNode
+    private static long lastMillis = -1;
+    private static long sequence = 0;
+    private static ScheduledExecutorService renewer;
+
+    /**
+     * Leases a node id that no other running process holds and keeps renewing it; call once at
+     * startup, before the first {@link #next()}. Fails if all 1024 are leased.
+     */
+    public static synchronized void claimNode() throws SQLException {
+        if (nodeId >= 0) return;
+
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            nodeId = DataAccess.inTransaction(conn, () -> {
+                int claimed;
+                try (PreparedStatement pstmt = conn.prepareStatement(
+                        "SELECT node_id FROM client_nodes WHERE leased_until < NOW() ORDER BY leased_until LIMIT 1 FOR UPDATE SKIP LOCKED");
+                     ResultSet rs = pstmt.executeQuery()) {
+                    if (!rs.next()) throw new SQLException("Every message id node is leased by a running client");
+                    claimed = rs.getInt("node_id");
+                }
+                extendLease(conn, claimed);
+                return claimed;
+            });
+        }
+        System.out.println("Claimed message id node " + nodeId);
+
+        renewer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "message-id-node-lease");
+            thread.setDaemon(true);
+            return thread;
+        });
+        renewer.scheduleWithFixedDelay(MessageIds::renewSafely, RENEW_MINUTES, RENEW_MINUTES, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Hands the node id back on shutdown, so it can be leased again right away. Shutdown runs on
+     * the JavaFX thread, where JDBC is forbidden, so the update goes through {@link DataAccess}.
+     */
+    public static synchronized CompletableFuture<Void> releaseNode() {
+        if (nodeId < 0) return CompletableFuture.completedFuture(null);
+
+        renewer.shutdownNow();
+        long node = nodeId;
+        nodeId = -1;
+        return DataAccess.run(() -> {
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement pstmt = conn.prepareStatement("UPDATE client_nodes SET leased_until = NOW() WHERE node_id = ?")) {
+                pstmt.setLong(1, node);
+                pstmt.executeUpdate();
+            }
+        });
+    }
+
+    /**
+     * The next id of this process.
+     */
+    public static synchronized long next() {
+        if (nodeId < 0) throw new IllegalStateException("No message id node claimed");
+
+        long now = Math.max(System.currentTimeMillis(), lastMillis); // never go back with the clock
+        if (now == lastMillis) {
+            sequence = (sequence + 1) & MAX_SEQUENCE;
+            if (sequence == 0) {
+                now = lastMillis + 1; // 4096 ids in one millisecond: borrow the next one
+            }
+        } else {
+            sequence = 0;
+        }
+        lastMillis = now;
+        return ((now - EPOCH_MILLIS) << (NODE_BITS + SEQUENCE_BITS)) | (nodeId << SEQUENCE_BITS) | sequence;
+    }
+
+    private static void renewSafely() {
+        long node;
+        synchronized (MessageIds.class) {
+            node = nodeId;
+        }
+        if (node < 0) return;
+
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            extendLease(conn, node);
+        } catch (SQLException e) {
+            e.printStackTrace(); // retried at the next renewal, well before the lease runs out
+        }
+    }
+
+    private static void extendLease(Connection conn, long node) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "UPDATE client_nodes SET leased_until = NOW() + INTERVAL ? MINUTE WHERE node_id = ?")) {
+            pstmt.setLong(1, LEASE_MINUTES);
+            pstmt.setLong(2, node);
+            pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Row ids of messages that are already stored under these (sender, client id) pairs, by
+     * position; {@code null} where there is no such row yet. {@code table} is one of the two
+     * message tables, never user input.
+     */
+    static List<Integer> findStored(Connection conn, String table, List<String> senders, List<Long> clientIds)
+            throws SQLException {
+        List<Integer> senderIds = UserDirectory.idsOf(conn, senders);
+        Map<String, Integer> stored = new HashMap<>();
+        try (PreparedStatement pstmt = conn.prepareStatement(storedQuery(table, clientIds.size()))) {
+            int index = 1;
+            for (int i = 0; i < clientIds.size(); i++) {
+                pstmt.setInt(index++, senderIds.get(i));
+                pstmt.setLong(index++, clientIds.get(i));
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    stored.put(rs.getInt("sender_id") + ":" + rs.getLong("client_id"), rs.getInt("id"));
+                }
+            }
+        }
+
+        List<Integer> ids = new ArrayList<>(clientIds.size());
+        for (int i = 0; i < clientIds.size(); i++) {
+            ids.add(stored.get(senderIds.get(i) + ":" + clientIds.get(i)));
+        }
+        return ids;
+    }
+
+    static String storedQuery(String table, int pairs) {
+        return "SELECT sender_id, client_id, id FROM " + table + " WHERE (sender_id, client_id) IN (" +
+                String.join(", ", Collections.nCopies(pairs, "(?, ?)")) + ")";
+    }
+}
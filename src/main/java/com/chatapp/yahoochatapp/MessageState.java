@@ -0,0 +1,178 @@
+package com.chatapp.yahoochatapp;
+
+import javafx.beans.property.BooleanProperty;
+import javafx.beans.property.IntegerProperty;
+import javafx.beans.property.SimpleBooleanProperty;
+import javafx.beans.property.SimpleIntegerProperty;
+import javafx.beans.property.SimpleStringProperty;
+import javafx.beans.property.StringProperty;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The parts of a public message that change after it is shown: id (once stored), text,
+ * version, delivery status, likes and comments. Cells bind their labels to these properties, so
+ * an update repaints just the affected labels. FX thread only.
+ */
+public class MessageState {
+
+    private final IntegerProperty id = new SimpleIntegerProperty(this, "id", -1);
+    private final StringProperty content = new SimpleStringProperty(this, "content", "");
+    private final StringProperty status = new SimpleStringProperty(this, "status", "");
+    private final IntegerProperty likeCount = new SimpleIntegerProperty(this, "likeCount", 0);
+    private final BooleanProperty likedByViewer = new SimpleBooleanProperty(this, "likedByViewer", false);
+    private final IntegerProperty commentCount = new SimpleIntegerProperty(this, "commentCount", 0);
+    private final ObservableList<InteractionSnapshot.Comment> comments = FXCollections.observableArrayList();
+    private int version; // row version the shown text is based on; edits and deletes compare-and-set against it
+    private long clientId; // MessageIds key of a message sent from this window, 0 otherwise
+    private CompletableFuture<Integer> stored; // completes with the row id once a message being sent is committed
+    private boolean cached; // shown from the local history cache: likes and comments not loaded, no actions
+
+    public MessageState(int id, String content, String status) {
+        this.id.set(id);
+        this.content.set(content);
+        this.status.set(status);
+    }
+
+    /**
+     * Replaces likes and comments with the values from a freshly loaded snapshot.
+     */
+    public void applyInteractions(InteractionSnapshot snapshot) {
+        int messageId = getId();
+        likeCount.set(snapshot.getLikeCount(messageId));
+        likedByViewer.set(snapshot.isLikedByViewer(messageId));
+        commentCount.set(snapshot.getCommentCount(messageId));
+        List<InteractionSnapshot.Comment> loaded = snapshot.getComments(messageId);
+        if (!loaded.equals(comments)) {
+            comments.setAll(loaded);
+        }
+    }
+
+    public void addComment(InteractionSnapshot.Comment comment) {
+        comments.add(comment);
+        commentCount.set(commentCount.get() + 1);
+    }
+
+    /**
+     * Takes back a comment that was shown before it was stored, e.g. because the write failed.
+     */
+    public void removeComment(InteractionSnapshot.Comment comment) {
+        int index = comments.lastIndexOf(comment);
+        if (index >= 0) {
+            comments.remove(index);
+            commentCount.set(Math.max(0, commentCount.get() - 1));
+        }
+    }
+
+    public int getId() {
+        return id.get();
+    }
+
+    public void setId(int value) {
+        id.set(value);
+    }
+
+    public IntegerProperty idProperty() {
+        return id;
+    }
+
+    public long getClientId() {
+        return clientId;
+    }
+
+    public void setClientId(long value) {
+        clientId = value;
+    }
+
+    /**
+     * The row id once the message is stored: already complete for loaded rows, {@code null} for
+     * rows that will never be stored (e.g. the typing indicator).
+     */
+    public CompletableFuture<Integer> whenStored() {
+        if (getId() > 0) return CompletableFuture.completedFuture(getId());
+        return stored;
+    }
+
+    public void setStored(CompletableFuture<Integer> value) {
+        stored = value;
+    }
+
+    /**
+     * Whether the row comes from the local history cache and has no likes or comments loaded.
+     * Such a row is read-only until the database page replaces it.
+     */
+    public boolean isCached() {
+        return cached;
+    }
+
+    public void setCached(boolean value) {
+        cached = value;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int value) {
+        version = value;
+    }
+
+    public String getContent() {
+        return content.get();
+    }
+
+    public void setContent(String value) {
+        content.set(value);
+    }
+
+    public StringProperty contentProperty() {
+        return content;
+    }
+
+    public String getStatus() {
+        return status.get();
+    }
+
+    public void setStatus(String value) {
+        status.set(value);
+    }
+
+    public StringProperty statusProperty() {
+        return status;
+    }
+
+    public int getLikeCount() {
+        return likeCount.get();
+    }
+
+    public void setLikeCount(int value) {
+        likeCount.set(value);
+    }
+
+    public IntegerProperty likeCountProperty() {
+        return likeCount;
+    }
+
+    public boolean isLikedByViewer() {
+        return likedByViewer.get();
+    }
+
+    public void setLikedByViewer(boolean value) {
+        likedByViewer.set(value);
+    }
+
+    public BooleanProperty likedByViewerProperty() {
+        return likedByViewer;
+    }
+
+    public IntegerProperty commentCountProperty() {
+        return commentCount;
+    }
+
+    public ObservableList<InteractionSnapshot.Comment> getComments() {
+        return comments;
+    }
+}
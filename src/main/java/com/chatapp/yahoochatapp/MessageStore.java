@@ -0,0 +1,57 @@
+package com.chatapp.yahoochatapp;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Id index over the rows currently loaded in the public chat list, so pushes, likes, comments
+ * and edits find their message without scanning the list. Rows leave the index when their page
+ * is trimmed or the message is deleted. FX thread only.
+ */
+public class MessageStore {
+
+    private final Map<Integer, ChatMessage> byId = new HashMap<>();
+
+    public void put(ChatMessage message) {
+        if (message.id() > 0) {
+            byId.put(message.id(), message);
+        }
+    }
+
+    public void putAll(Collection<ChatMessage> messages) {
+        for (ChatMessage message : messages) {
+            put(message);
+        }
+    }
+
+    public ChatMessage get(int messageId) {
+        return byId.get(messageId);
+    }
+
+    /**
+     * Live state of a loaded message, or {@code null} if it is not on screen.
+     */
+    public MessageState state(int messageId) {
+        ChatMessage message = byId.get(messageId);
+        return message != null ? message.state() : null;
+    }
+
+    public boolean contains(int messageId) {
+        return byId.containsKey(messageId);
+    }
+
+    public ChatMessage remove(int messageId) {
+        return byId.remove(messageId);
+    }
+
+    public void removeAll(Collection<ChatMessage> messages) {
+        for (ChatMessage message : messages) {
+            byId.remove(message.id());
+        }
+    }
+
+    public void clear() {
+        byId.clear();
+    }
+}
@@ -0,0 +1,399 @@
+package com.chatapp.yahoochatapp;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Durable queue for outgoing chat messages, so a send survives a slow or unreachable database
+ * and an application restart.
+ *
+ * Every send is appended to a local journal ({@code chatapp.outbox.file}, by default
+ * {@code ~/.yahoochatapp/outbox.journal}) before it is handed to the repositories. The journal
+ * thread writes everything that queued up since its last write and forces it to disk once per
+ * group, so a burst of sends costs one fsync. A stored message gets a completion record; on start
+ * the sends without one are replayed. A record is one line: the length and CRC-32 of its
+ * {@link ChatFrame} encoding, then the encoding itself. A line whose length or checksum does not
+ * match, such as a write torn by a crash that still happens to decode, is skipped on replay.
+ *
+ * After a failed send the outbox goes offline: new sends are only journaled, and a retry task
+ * resubmits everything pending in journal order, backing off exponentially from
+ * {@code chatapp.outbox.retryMs} (1 s) up to {@code chatapp.outbox.maxRetryMs} (60 s). Client ids
+ * ({@link MessageIds}) make resubmitting a message that was in fact stored harmless. A message is
+ * given up after {@code chatapp.outbox.maxAttempts} (30) failed attempts.
+ */
+public class Outbox {
+
+    public enum Kind {
+        PUBLIC,
+        PRIVATE
+    }
+
+    /**
+     * What the bubble of a message that is not stored yet shows.
+     */
+    public enum State {
+        SENDING,
+        WAITING // the database is unreachable; the message is journaled and will be retried
+    }
+
+    private static final long RETRY_MILLIS = Math.max(100, Long.getLong("chatapp.outbox.retryMs", 1_000));
+    private static final long MAX_RETRY_MILLIS = Math.max(RETRY_MILLIS, Long.getLong("chatapp.outbox.maxRetryMs", 60_000));
+    private static final int MAX_ATTEMPTS = Math.max(1, Integer.getInteger("chatapp.outbox.maxAttempts", 30));
+    private static final long COMPACT_BYTES = 1 << 20; // truncated once this big and nothing is pending
+
+    private static final String SEND = "SEND";
+    private static final String DONE = "DONE";
+
+    private static final class Entry {
+        final Kind kind;
+        final long clientId;
+        final String sender;
+        final String receiver; // "" for public messages
+        final String text;
+        final Consumer<State> onState; // runs on the FX thread; null for replayed messages
+        final CompletableFuture<Integer> stored = new CompletableFuture<>();
+
+        // Guarded by Outbox.class
+        boolean inFlight;
+        int attempts;
+
+        Entry(Kind kind, long clientId, String sender, String receiver, String text, Consumer<State> onState) {
+            this.kind = kind;
+            this.clientId = clientId;
+            this.sender = sender;
+            this.receiver = receiver;
+            this.text = text;
+            this.onState = onState;
+        }
+
+        String sendRecord() {
+            return frame(ChatFrame.of(SEND, kind, clientId, sender, receiver, text));
+        }
+
+        String doneRecord() {
+            return frame(ChatFrame.of(DONE, clientId));
+        }
+    }
+
+    // A journal line, and the message to hand over once it is on disk (null for completion records)
+    private record Record(String line, Entry deliverAfterSync) {
+    }
+
+    private static final Map<Long, Entry> pending = new LinkedHashMap<>(); // journal order
+    private static final LinkedBlockingQueue<Record> records = new LinkedBlockingQueue<>();
+
+    private static boolean online = true;
+    private static boolean retryScheduled = false;
+    private static long retryDelay = RETRY_MILLIS;
+
+    private static FileChannel journal; // null if the journal could not be opened; sends still go out
+    private static FileLock journalLock;
+    private static Thread writer;
+    private static ScheduledExecutorService retrier;
+    private static volatile boolean running = false;
+
+    /**
+     * Opens the journal and replays the sends a previous run did not get stored.
+     */
+    public static synchronized void start() {
+        if (running) return;
+        running = true;
+
+        List<Entry> replay = openJournal();
+
+        retrier = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "outbox-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        writer = new Thread(Outbox::writeLoop, "outbox-journal");
+        writer.setDaemon(true);
+        writer.start();
+
+        for (Entry entry : replay) {
+            pending.put(entry.clientId, entry);
+        }
+        if (!replay.isEmpty()) {
+            System.out.println("Replaying " + replay.size() + " unsent message(s) from the outbox.");
+            replay.forEach(Outbox::deliver);
+        }
+    }
+
+    /**
+     * Journals a public message and sends it; completes with the row id once it is stored, or
+     * {@code null} if it was given up.
+     */
+    public static CompletableFuture<Integer> sendPublic(long clientId, String sender, String text, Consumer<State> onState) {
+        return enqueue(new Entry(Kind.PUBLIC, clientId, sender, "", text, onState));
+    }
+
+    /**
+     * Journals a private message and sends it; completes like {@link #sendPublic}.
+     */
+    public static CompletableFuture<Integer> sendPrivate(long clientId, String sender, String receiver, String text,
+                                                         Consumer<State> onState) {
+        return enqueue(new Entry(Kind.PRIVATE, clientId, sender, receiver, text, onState));
+    }
+
+    /**
+     * Writes out the journal records still queued and stops retrying; pending messages are
+     * replayed on the next start.
+     */
+    public static void shutdown() {
+        synchronized (Outbox.class) { // not held while joining: the journal thread takes the lock
+            if (!running) return;
+            running = false;
+        }
+
+        retrier.shutdownNow();
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            if (journalLock != null) journalLock.release();
+            if (journal != null) journal.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static CompletableFuture<Integer> enqueue(Entry entry) {
+        synchronized (Outbox.class) {
+            pending.put(entry.clientId, entry);
+        }
+        records.add(new Record(entry.sendRecord(), entry)); // never blocks; the journal thread does the IO
+        return entry.stored;
+    }
+
+    // Journal thread: one write and one fsync for everything that queued up meanwhile
+    private static void writeLoop() {
+        List<Record> group = new ArrayList<>();
+
+        while (running || !records.isEmpty()) {
+            try {
+                Record first = records.poll(250, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                group.add(first);
+                records.drainTo(group);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                records.drainTo(group);
+                running = false;
+            }
+
+            append(group);
+            for (Record record : group) {
+                if (record.deliverAfterSync() == null) continue;
+                boolean send;
+                synchronized (Outbox.class) {
+                    send = online;
+                }
+                if (send) {
+                    deliver(record.deliverAfterSync());
+                } else {
+                    notifyState(record.deliverAfterSync(), State.WAITING); // the retry task picks it up
+                    scheduleRetry();
+                }
+            }
+            group.clear();
+            compactIfIdle();
+        }
+    }
+
+    private static void append(List<Record> group) {
+        if (journal == null) return;
+
+        StringBuilder lines = new StringBuilder();
+        boolean hasSends = false;
+        for (Record record : group) {
+            lines.append(record.line());
+            hasSends |= record.deliverAfterSync() != null;
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                journal.write(buffer);
+            }
+            if (hasSends) {
+                journal.force(false); // completion records alone need no fsync: a replayed stored message is found by its client id
+            }
+        } catch (IOException e) {
+            e.printStackTrace(); // the messages are still sent, just not durable
+        }
+    }
+
+    private static void compactIfIdle() {
+        if (journal == null) return;
+        try {
+            synchronized (Outbox.class) {
+                if (!pending.isEmpty() || !records.isEmpty() || journal.size() < COMPACT_BYTES) return;
+            }
+            journal.truncate(0); // every send on disk has its completion record
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static void deliver(Entry entry) {
+        synchronized (Outbox.class) {
+            if (entry.inFlight || entry.stored.isDone()) return;
+            entry.inFlight = true;
+            entry.attempts++;
+        }
+        notifyState(entry, State.SENDING);
+
+        CompletableFuture<Integer> saved = entry.kind == Kind.PUBLIC
+                ? PublicMessageRepository.save(entry.clientId, entry.sender, entry.text)
+                : PrivateMessageRepository.save(entry.clientId, entry.sender, entry.receiver, entry.text);
+        saved.whenComplete((messageId, error) -> delivered(entry, messageId, error));
+    }
+
+    private static void delivered(Entry entry, Integer messageId, Throwable error) {
+        boolean stored = error == null && messageId != null && messageId > 0;
+        boolean givenUp = false;
+        synchronized (Outbox.class) {
+            entry.inFlight = false;
+            if (stored) {
+                pending.remove(entry.clientId);
+                online = true;
+                retryDelay = RETRY_MILLIS;
+            } else if (entry.attempts >= MAX_ATTEMPTS) {
+                pending.remove(entry.clientId);
+                givenUp = true;
+            } else {
+                online = false;
+            }
+        }
+
+        if (stored) {
+            records.add(new Record(entry.doneRecord(), null));
+            ChatPushClient.publish(entry.kind == Kind.PUBLIC ? ChatFrame.PUBLIC_MESSAGE : ChatFrame.PRIVATE_MESSAGE, messageId);
+            entry.stored.complete(messageId);
+        } else if (givenUp) {
+            System.err.println("Giving up on message " + entry.clientId + " after " + entry.attempts + " attempts.");
+            records.add(new Record(entry.doneRecord(), null));
+            entry.stored.complete(null);
+        } else {
+            notifyState(entry, State.WAITING);
+            scheduleRetry();
+        }
+    }
+
+    private static synchronized void scheduleRetry() {
+        if (retryScheduled || !running) return;
+        retryScheduled = true;
+        retrier.schedule(Outbox::retry, retryDelay, TimeUnit.MILLISECONDS);
+        retryDelay = Math.min(MAX_RETRY_MILLIS, retryDelay * 2);
+    }
+
+    // Resubmits everything pending, oldest first; the write-behind queue keeps that order in its batches
+    private static void retry() {
+        List<Entry> due;
+        synchronized (Outbox.class) {
+            retryScheduled = false;
+            due = new ArrayList<>(pending.values());
+        }
+        due.forEach(Outbox::deliver);
+    }
+
+    private static void notifyState(Entry entry, State state) {
+        if (entry.onState != null) {
+            DataAccess.FX.execute(() -> {
+                if (!entry.stored.isDone()) entry.onState.accept(state);
+            });
+        }
+    }
+
+    // Sends in the journal without a completion record, in journal order
+    private static List<Entry> openJournal() {
+        Path path = Paths.get(System.getProperty("chatapp.outbox.file",
+                Paths.get(System.getProperty("user.home"), ".yahoochatapp", "outbox.journal").toString()));
+        try {
+            if (path.getParent() != null) Files.createDirectories(path.getParent());
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            FileLock lock = channel.tryLock();
+            if (lock == null) {
+                System.err.println("⚠️ Outbox journal " + path + " is used by another instance; sends are not journaled.");
+                channel.close();
+                return List.of();
+            }
+
+            Map<Long, Entry> unsent = new LinkedHashMap<>();
+            String content = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+            for (String line : content.split("\n")) {
+                if (line.isEmpty()) continue;
+                try {
+                    ChatFrame record = unframe(line);
+                    if (SEND.equals(record.type())) {
+                        long clientId = record.longField(1);
+                        unsent.put(clientId, new Entry(Kind.valueOf(record.field(0)), clientId, record.field(2),
+                                record.field(3), record.field(4), null));
+                    } else if (DONE.equals(record.type())) {
+                        unsent.remove(record.longField(0));
+                    }
+                } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                    System.err.println("Skipping damaged outbox record."); // e.g. a write torn by a crash
+                }
+            }
+
+            channel.position(channel.size());
+            if (!content.isEmpty() && !content.endsWith("\n")) {
+                channel.write(ByteBuffer.wrap(new byte[]{'\n'})); // end a torn record before appending
+            }
+            journal = channel;
+            journalLock = lock;
+            return new ArrayList<>(unsent.values());
+        } catch (IOException e) {
+            e.printStackTrace();
+            return List.of();
+        }
+    }
+
+    // "<length>\t<crc32 hex>\t<frame>\n"; the frame encoding is ASCII, so its length is its size on disk
+    private static String frame(ChatFrame frame) {
+        String encoded = frame.encode();
+        String payload = encoded.substring(0, encoded.length() - 1);
+        return payload.length() + "\t" + Long.toHexString(checksum(payload)) + "\t" + encoded;
+    }
+
+    // The record of a journal line; throws IllegalArgumentException unless the line is a whole, intact record
+    private static ChatFrame unframe(String line) {
+        int lengthEnd = line.indexOf('\t');
+        int checksumEnd = lengthEnd < 0 ? -1 : line.indexOf('\t', lengthEnd + 1);
+        if (checksumEnd < 0) throw new IllegalArgumentException("Unframed outbox record");
+
+        String payload = line.substring(checksumEnd + 1);
+        if (!line.substring(0, lengthEnd).equals(Integer.toString(payload.length()))
+                || !line.substring(lengthEnd + 1, checksumEnd).equals(Long.toHexString(checksum(payload)))) {
+            throw new IllegalArgumentException("Outbox record fails its length or checksum");
+        }
+        return ChatFrame.decode(payload);
+    }
+
+    private static long checksum(String payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload.getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+}
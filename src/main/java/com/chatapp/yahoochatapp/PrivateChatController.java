@@ -15,12 +15,12 @@ import javafx.scene.web.WebEngine;
 import javafx.stage.Stage;
 import javafx.scene.web.WebView;
 import java.net.URL;
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 public class PrivateChatController {
 
@@ -32,14 +32,24 @@ public class PrivateChatController {
     private String currentUser;
     private String friendUsername;
     private Stage chatStage;
-    private Thread chatRefreshThread;
+    private RefreshScheduler.Task refreshTask;
+
+    // Per-conversation watermarks and the bubbles they map to, so refreshes only touch changed rows
+    private volatile PrivateChatSync chatSync;
+    private final Map<Integer, HBox> bubblesById = new HashMap<>();
+    private final Map<Long, HBox> pendingByClientId = new HashMap<>(); // sent from this window, row id not known yet
+    private final Consumer<ChatFrame> pushListener = this::onPushFrame;
 
     public void setChatStage(Stage stage) {
         this.chatStage = stage;
+
+        // Pushed messages for this conversation arrive through the chat server
+        ChatPushClient.addListener(pushListener);
+        stage.setOnHidden(event -> ChatPushClient.removeListener(pushListener));
     }
 
-    public void setFriend(String friend) {
-        this.friendUsername = friend;
+    public void setFriend(FriendEntry friend) {
+        this.friendUsername = friend.getName();
         loadPrivateChat(friendUsername);
     }
 
@@ -57,55 +67,198 @@ public class PrivateChatController {
         });
     }
 
-    public void loadPrivateChat(String friendUsername) {
+    private void loadPrivateChat(String friendUsername) {
         String currentUser = SessionManager.getUser();
-        friendUsername = friendUsername.replaceAll("\\(\\d+\\)", "");
 
         System.out.println("Loading chat between " + currentUser + " and " + friendUsername);
 
-        String query = "SELECT sender, message FROM chat_messages " +
-                "WHERE (sender = ? AND receiver = ?) OR (sender = ? AND receiver = ?) ORDER BY id ASC";
+        // Private history is never cached on disk: each window loads it from the database
+        PrivateChatSync sync = new PrivateChatSync(currentUser, friendUsername);
+        PrivateMessageRepository.loadConversation(sync)
+                .thenAcceptAsync(messages -> showConversation(sync, messages), DataAccess.FX)
+                .exceptionally(DataAccess::logFailure);
+    }
 
+    private void showConversation(PrivateChatSync sync, List<PrivateChatSync.PrivateMessage> messages) {
+        chatSync = sync;
+        bubblesById.clear();
         List<HBox> messageBubbles = new ArrayList<>();
+        for (PrivateChatSync.PrivateMessage message : messages) {
+            HBox bubble = createBubble(message.sender(), message.message());
+            bindRow(bubble, message.id(), message.version());
+            messageBubbles.add(bubble);
+        }
+        privateChatListView.getItems().setAll(messageBubbles);
+        privateChatListView.scrollTo(messageBubbles.size() - 1);
+    }
+
+    /**
+     * Applies new, edited and deleted rows to the existing bubbles instead of rebuilding the list.
+     */
+    private void applyChanges(List<PrivateChatSync.PrivateMessage> changes) {
+        boolean appended = false;
 
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(query)) {
-
-            pstmt.setString(1, currentUser);
-            pstmt.setString(2, friendUsername);
-            pstmt.setString(3, friendUsername);
-            pstmt.setString(4, currentUser);
-
-            try (ResultSet rs = pstmt.executeQuery()) {
-                while (rs.next()) {
-                    String sender = rs.getString("sender");
-                    String message = rs.getString("message");
-
-                    Label label = new Label(sender + ": " + message);
-                    label.setWrapText(true);
-                    label.setMaxWidth(300);
-                    label.setPadding(new Insets(8));
-                    label.setStyle(
-                            "-fx-background-color: " + (sender.equals(currentUser) ? "#DCF8C6" : "#FFFFFF") + ";" +
-                                    "-fx-background-radius: 10;" +
-                                    "-fx-border-radius: 10;" +
-                                    "-fx-font-size: 14px;" +
-                                    "-fx-text-fill: black;"
-                    );
-
-                    HBox hBox = new HBox(label);
-                    hBox.setAlignment(sender.equals(currentUser) ? Pos.CENTER_RIGHT : Pos.CENTER_LEFT);
-                    hBox.setPadding(new Insets(4, 10, 4, 10));
-
-                    messageBubbles.add(hBox);
+        for (PrivateChatSync.PrivateMessage change : changes) {
+            HBox existing = bubblesById.get(change.id());
+
+            if (change.deleted()) {
+                if (existing != null) {
+                    bubblesById.remove(change.id());
+                    privateChatListView.getItems().remove(existing);
                 }
+            } else if (existing != null) {
+                Label label = (Label) existing.getProperties().get("label");
+                label.setText(change.sender() + ": " + change.message());
+                existing.getProperties().put("version", change.version());
+            } else if (pendingByClientId.containsKey(change.clientId())) {
+                // Our own message, seen before the outbox reported it stored: the pending bubble becomes this row
+                HBox pending = pendingByClientId.remove(change.clientId());
+                bindRow(pending, change.id(), change.version());
+                showSent(pending);
+            } else {
+                HBox bubble = createBubble(change.sender(), change.message());
+                bindRow(bubble, change.id(), change.version());
+                privateChatListView.getItems().add(bubble);
+                appended = true;
+            }
+        }
+
+        if (appended) {
+            privateChatListView.scrollTo(privateChatListView.getItems().size() - 1);
+        }
+    }
+
+    // Called on the push connection thread
+    private void onPushFrame(ChatFrame frame) {
+        PrivateChatSync sync = chatSync;
+        if (sync == null) return;
+
+        if (ChatFrame.PRIVATE_MESSAGE.equals(frame.type()) && sync.isConversation(frame.field(1), frame.field(2))) {
+            PrivateChatSync.PrivateMessage row = new PrivateChatSync.PrivateMessage(
+                    frame.intField(0), frame.field(1), frame.field(3),
+                    frame.intField(4) == 1, new Timestamp(frame.longField(5)), frame.intField(6), frame.longField(7));
+            List<PrivateChatSync.PrivateMessage> changes = sync.acceptPushed(row);
+            if (!changes.isEmpty()) {
+                Platform.runLater(() -> applyChanges(changes));
             }
+        } else if (ChatFrame.CONNECTED.equals(frame.type())) {
+            refreshFromDatabase(sync); // catch up on anything pushed while we were disconnected
+        }
+    }
 
-        } catch (SQLException e) {
-            e.printStackTrace();
+    private void refreshFromDatabase(PrivateChatSync sync) {
+        PrivateMessageRepository.fetchChanges(sync) // only new or changed rows
+                .thenAcceptAsync(changes -> {
+                    if (!changes.isEmpty()) {
+                        applyChanges(changes);
+                    }
+                }, DataAccess.FX)
+                .exceptionally(DataAccess::logFailure);
+    }
+
+    private HBox createBubble(String sender, String message) {
+        boolean mine = sender.equals(SessionManager.getUser());
+
+        Label label = new Label(sender + ": " + message);
+        label.setWrapText(true);
+        label.setMaxWidth(300);
+        label.setPadding(new Insets(8));
+        label.setStyle(
+                "-fx-background-color: " + (mine ? "#DCF8C6" : "#FFFFFF") + ";" +
+                        "-fx-background-radius: 10;" +
+                        "-fx-border-radius: 10;" +
+                        "-fx-font-size: 14px;" +
+                        "-fx-text-fill: black;"
+        );
+
+        HBox hBox = new HBox(label);
+        hBox.setAlignment(mine ? Pos.CENTER_RIGHT : Pos.CENTER_LEFT);
+        hBox.setPadding(new Insets(4, 10, 4, 10));
+        hBox.getProperties().put("label", label);
+        if (mine) {
+            addContextMenu(hBox);
         }
+        return hBox;
+    }
+
+    // The stored row behind a bubble: its id, and the version edits and deletes compare against
+    private void bindRow(HBox bubble, int messageId, int version) {
+        bubble.getProperties().put("id", messageId);
+        bubble.getProperties().put("version", version);
+        bubblesById.put(messageId, bubble);
+    }
+
+    /**
+     * Right-click menu for editing and deleting your own messages, once they are stored.
+     */
+    private void addContextMenu(HBox bubble) {
+        MenuItem editItem = new MenuItem("Edit");
+        editItem.setOnAction(event -> editMessage(bubble));
+
+        MenuItem deleteItem = new MenuItem("Delete");
+        deleteItem.setOnAction(event -> deleteMessage(bubble));
+
+        ContextMenu contextMenu = new ContextMenu(editItem, deleteItem);
+        bubble.setOnContextMenuRequested(event -> {
+            if (bubble.getProperties().containsKey("id")) { // still being sent otherwise
+                contextMenu.show(bubble, event.getScreenX(), event.getScreenY());
+            }
+        });
+    }
+
+    private void editMessage(HBox bubble) {
+        int messageId = (int) bubble.getProperties().get("id");
+        int expectedVersion = (int) bubble.getProperties().get("version");
+        Label label = (Label) bubble.getProperties().get("label");
+        String prefix = SessionManager.getUser() + ": ";
+        String current = label.getText().startsWith(prefix) ? label.getText().substring(prefix.length()) : label.getText();
+
+        TextInputDialog dialog = new TextInputDialog(current);
+        dialog.setTitle("Edit Message");
+        dialog.setHeaderText("Edit your message:");
+        dialog.setContentText("Message:");
+
+        dialog.showAndWait().map(String::trim).filter(text -> !text.isEmpty()).ifPresent(newMessage ->
+                // Compare-and-set on the version this bubble shows, so a change made elsewhere is not overwritten
+                PrivateMessageRepository.updateMessageText(messageId, SessionManager.getUser(), expectedVersion, newMessage)
+                        .thenAcceptAsync(updated -> {
+                            if (updated) {
+                                if (expectedVersion == (int) bubble.getProperties().get("version")) { // no push got here first
+                                    bubble.getProperties().put("version", expectedVersion + 1);
+                                    label.setText(prefix + newMessage);
+                                }
+                                ChatPushClient.publish(ChatFrame.PRIVATE_MESSAGE, messageId);
+                            } else {
+                                showConflict();
+                            }
+                        }, DataAccess.FX)
+                        .exceptionally(DataAccess::logFailure));
+    }
 
-        Platform.runLater(() -> privateChatListView.getItems().setAll(messageBubbles));
+    private void deleteMessage(HBox bubble) {
+        int messageId = (int) bubble.getProperties().get("id");
+        int expectedVersion = (int) bubble.getProperties().get("version");
+
+        // Soft delete, so the other side picks the removal up through its change watermark
+        PrivateMessageRepository.delete(messageId, SessionManager.getUser(), expectedVersion)
+                .thenAcceptAsync(deleted -> {
+                    if (deleted) {
+                        bubblesById.remove(messageId);
+                        privateChatListView.getItems().remove(bubble);
+                        ChatPushClient.publish(ChatFrame.PRIVATE_MESSAGE, messageId);
+                    } else {
+                        showConflict();
+                    }
+                }, DataAccess.FX)
+                .exceptionally(DataAccess::logFailure);
+    }
+
+    private void showConflict() {
+        Alert alert = new Alert(Alert.AlertType.WARNING);
+        alert.setTitle("Edit Conflict");
+        alert.setHeaderText(null);
+        alert.setContentText("This message was changed or deleted elsewhere.");
+        alert.show();
     }
 
     @FXML
@@ -114,57 +267,50 @@ public class PrivateChatController {
         if (message.isEmpty()) return;
 
         String sender = SessionManager.getUser();
-        savePrivateMessage(sender, friendUsername, message);
 
-        // Update ListView directly
-        Platform.runLater(() -> {
-            Label messageLabel = new Label(sender + ": " + message);
-            messageLabel.setWrapText(true);
-            messageLabel.setMaxWidth(300);
-            messageLabel.setPadding(new Insets(8));
-            messageLabel.setStyle("-fx-background-color: #DCF8C6; -fx-background-radius: 10; -fx-border-radius: 10; -fx-font-size: 14px; -fx-text-fill: black;");
-
-            HBox bubble = new HBox(messageLabel);
-            bubble.setAlignment(Pos.CENTER_RIGHT);
-            bubble.setPadding(new Insets(4, 10, 4, 10));
-
-            privateChatListView.getItems().add(bubble);
-            privateMessageField.clear();
-        });
+        // Update ListView directly; the row id and "Sent" status follow once the batch insert commits
+        long clientId = MessageIds.next();
+        HBox bubble = createBubble(sender, message);
+        Label status = new Label("Sending…");
+        status.setStyle("-fx-font-size: 10px; -fx-text-fill: gray;");
+        bubble.getChildren().add(status);
+        bubble.getProperties().put("status", status);
+        pendingByClientId.put(clientId, bubble);
+        privateChatListView.getItems().add(bubble);
+        privateChatListView.scrollTo(privateChatListView.getItems().size() - 1);
+        privateMessageField.clear();
+
+        // Journaled first, so it survives the database being unreachable; the outbox pushes it once stored
+        Outbox.sendPrivate(clientId, sender, friendUsername, message,
+                        state -> status.setText(state == Outbox.State.WAITING ? "Waiting for connection…" : "Sending…"))
+                .exceptionally(DataAccess::logFailure)
+                .thenAcceptAsync(messageId -> {
+                    if (messageId != null && messageId > 0) {
+                        // A delta or push that saw the row first has already bound this bubble to it
+                        if (pendingByClientId.remove(clientId) != null) {
+                            bindRow(bubble, messageId, 0); // the next delta sees this row and just updates it in place
+                        }
+                        showSent(bubble);
+                    } else {
+                        pendingByClientId.remove(clientId);
+                        status.setText("Not sent");
+                        status.setStyle("-fx-font-size: 10px; -fx-text-fill: red;");
+                    }
+                }, DataAccess.FX);
     }
 
-    private void savePrivateMessage(String sender, String receiver, String message) {
-        String query = "INSERT INTO chat_messages (sender, receiver, message, status) VALUES (?, ?, ?, 'Delivered')";
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(query)) {
-            pstmt.setString(1, sender);
-            pstmt.setString(2, receiver);
-            pstmt.setString(3, message);
-            pstmt.executeUpdate();
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+    private void showSent(HBox bubble) {
+        Label status = (Label) bubble.getProperties().get("status");
+        if (status != null) status.setText("Sent");
     }
 
     public void startChatAutoRefresh() {
-        if (chatRefreshThread != null && chatRefreshThread.isAlive()) {
-            return; // ✅ Prevent duplicate threads
+        if (refreshTask != null) {
+            return; // ✅ Prevent duplicate polls
         }
 
-        chatRefreshThread = new Thread(() -> {
-            while (chatStage != null && chatStage.isShowing()) {
-                try {
-                    Thread.sleep(3000); // ✅ Refresh every 3 seconds
-                    Platform.runLater(() -> loadPrivateChat(friendUsername)); // ✅ Refresh chat in UI
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                    break;
-                }
-            }
-        });
-
-        chatRefreshThread.setDaemon(true);
-        chatRefreshThread.start();
+        // ✅ Shared scheduler: polls only while the chat server is unreachable, batched with the other open chats
+        refreshTask = RefreshScheduler.watchConversation(chatStage, 3_000, () -> chatSync, this::applyChanges);
     }
 
     @FXML
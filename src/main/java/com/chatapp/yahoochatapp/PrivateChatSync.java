@@ -0,0 +1,221 @@
+package com.chatapp.yahoochatapp;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tracks what one private conversation window has already seen, so each refresh only fetches
+ * rows that are new ({@code id} above the last seen id) or changed ({@code updated_at} past the
+ * change watermark). Edits and soft deletes bump {@code updated_at}, which is how they show up.
+ *
+ * Rows are matched and read by user id; the two ids are looked up once per sync, and a row's
+ * sender is named from them without touching {@code users}.
+ */
+public class PrivateChatSync {
+
+    // Rows committed slightly out of order can carry an updated_at just below the watermark,
+    // so every delta query looks back a little and drops rows it has already applied.
+    private static final long WATERMARK_OVERLAP_MILLIS = 2_000;
+
+    private static final String COLUMNS = "SELECT id, sender_id, message, deleted, updated_at, version, client_id FROM chat_messages ";
+    private static final String CONVERSATION = "((sender_id = ? AND receiver_id = ?) OR (sender_id = ? AND receiver_id = ?)) ";
+
+    // Shared with QueryPlanCheck, which EXPLAINs exactly what runs here
+    static final String LOAD_ALL = COLUMNS + "WHERE " + CONVERSATION + "AND deleted = 0 ORDER BY id ASC";
+
+    private final String currentUser;
+    private final String friend;
+    private int currentUserId; // 0 until resolved
+    private int friendId;
+
+    private int lastSeenId = 0;
+    private Timestamp changeWatermark = new Timestamp(0);
+    private final Map<Integer, Timestamp> appliedVersions = new HashMap<>();
+
+    /**
+     * One row; {@code version} is what edits and deletes compare against (see V9 migration), and
+     * {@code clientId} the sender's {@link MessageIds} key (0 if unknown), which lets the sending
+     * window match the row to the bubble it is still showing as pending.
+     */
+    public record PrivateMessage(int id, String sender, String message, boolean deleted, Timestamp updatedAt, int version,
+                                 long clientId) {
+    }
+
+    public PrivateChatSync(String currentUser, String friend) {
+        this.currentUser = currentUser;
+        this.friend = friend;
+    }
+
+    /**
+     * Loads the whole (non-deleted) conversation and resets the watermarks to it.
+     */
+    public synchronized List<PrivateMessage> loadAll() throws SQLException {
+        lastSeenId = 0;
+        changeWatermark = new Timestamp(0);
+        appliedVersions.clear();
+
+        return apply(query(LOAD_ALL));
+    }
+
+    /**
+     * Rows inserted, edited or deleted since the last call, oldest first.
+     */
+    public List<PrivateMessage> fetchChanges() throws SQLException {
+        return fetchChanges(List.of(this)).get(this);
+    }
+
+    /**
+     * Delta refresh for several open conversations in one round trip: one UNION ALL branch per
+     * conversation, each answered from the conversation indexes. Returns the changes per sync.
+     */
+    public static Map<PrivateChatSync, List<PrivateMessage>> fetchChanges(List<PrivateChatSync> syncs) throws SQLException {
+        Map<PrivateChatSync, List<PrivateMessage>> fetched = new IdentityHashMap<>();
+        if (syncs.isEmpty()) return fetched;
+
+        for (PrivateChatSync sync : syncs) {
+            fetched.put(sync, new ArrayList<>());
+        }
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(deltaQuery(syncs.size()))) {
+
+            int index = 1;
+            for (PrivateChatSync sync : syncs) {
+                sync.resolveIds(conn);
+                index = sync.bindDelta(pstmt, index);
+            }
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    PrivateChatSync sync = syncs.get(rs.getInt("conversation"));
+                    fetched.get(sync).add(sync.readRow(rs));
+                }
+            }
+        }
+
+        fetched.replaceAll((sync, rows) -> sync.applyFetched(rows));
+        return fetched;
+    }
+
+    /**
+     * The delta query for {@code conversations} open windows; each branch binds the conversation
+     * pair, then the last seen id and the change watermark.
+     */
+    static String deltaQuery(int conversations) {
+        StringBuilder sql = new StringBuilder();
+        for (int i = 0; i < conversations; i++) {
+            if (i > 0) sql.append("UNION ALL ");
+            sql.append("(SELECT ").append(i).append(" AS conversation, id, sender_id, message, deleted, updated_at, version, client_id FROM chat_messages ")
+                    .append("WHERE ").append(CONVERSATION).append("AND (id > ? OR updated_at > ?)) ");
+        }
+        return sql.append("ORDER BY id ASC").toString();
+    }
+
+    /**
+     * Applies a row pushed by the chat server; returns it if the window still has to render it.
+     */
+    public synchronized List<PrivateMessage> acceptPushed(PrivateMessage row) {
+        return apply(List.of(row));
+    }
+
+    /**
+     * Whether a logged change is to a message of this conversation.
+     */
+    public boolean isAffectedBy(ChatEvents.Event event) {
+        return event.isPrivate() && event.isBetween(currentUser, friend);
+    }
+
+    public boolean isConversation(String sender, String receiver) {
+        return (sender.equals(currentUser) && receiver.equals(friend))
+                || (sender.equals(friend) && receiver.equals(currentUser));
+    }
+
+    private List<PrivateMessage> query(String sql) throws SQLException {
+        List<PrivateMessage> rows = new ArrayList<>();
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            resolveIds(conn);
+            bindConversation(pstmt, 1);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    rows.add(readRow(rs));
+                }
+            }
+        }
+        return rows;
+    }
+
+    private synchronized void resolveIds(Connection conn) throws SQLException {
+        if (currentUserId > 0 && friendId > 0) return;
+        currentUserId = UserDirectory.idOf(conn, currentUser);
+        friendId = UserDirectory.idOf(conn, friend);
+    }
+
+    private int bindConversation(PreparedStatement pstmt, int index) throws SQLException {
+        pstmt.setInt(index++, currentUserId);
+        pstmt.setInt(index++, friendId);
+        pstmt.setInt(index++, friendId);
+        pstmt.setInt(index++, currentUserId);
+        return index;
+    }
+
+    private synchronized int bindDelta(PreparedStatement pstmt, int index) throws SQLException {
+        index = bindConversation(pstmt, index);
+        pstmt.setInt(index++, lastSeenId);
+        pstmt.setTimestamp(index++, new Timestamp(changeWatermark.getTime() - WATERMARK_OVERLAP_MILLIS));
+        return index;
+    }
+
+    private synchronized List<PrivateMessage> applyFetched(List<PrivateMessage> rows) {
+        return apply(rows);
+    }
+
+    // Every row of the conversation was sent by one of its two users
+    private PrivateMessage readRow(ResultSet rs) throws SQLException {
+        return new PrivateMessage(
+                rs.getInt("id"),
+                rs.getInt("sender_id") == currentUserId ? currentUser : friend,
+                rs.getString("message"),
+                rs.getBoolean("deleted"),
+                rs.getTimestamp("updated_at"),
+                rs.getInt("version"),
+                rs.getLong("client_id")); // 0 for SQL NULL
+    }
+
+    // Advances the watermarks and filters out row versions that were already applied
+    private List<PrivateMessage> apply(List<PrivateMessage> rows) {
+        List<PrivateMessage> changes = new ArrayList<>();
+
+        for (PrivateMessage row : rows) {
+            lastSeenId = Math.max(lastSeenId, row.id());
+            if (row.updatedAt().after(changeWatermark)) {
+                changeWatermark = row.updatedAt();
+            }
+
+            Timestamp applied = appliedVersions.get(row.id());
+            if (applied != null && applied.equals(row.updatedAt())) {
+                continue;
+            }
+            if (row.deleted()) {
+                appliedVersions.remove(row.id());
+                if (applied == null) {
+                    continue; // deleted before we ever showed it
+                }
+            } else {
+                appliedVersions.put(row.id(), row.updatedAt());
+            }
+            changes.add(row);
+        }
+        return changes;
+    }
+}
@@ -0,0 +1,168 @@
+package com.chatapp.yahoochatapp;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Private ({@code chat_messages}) queries. Every method runs off the JavaFX thread.
+ */
+public class PrivateMessageRepository {
+
+    private record OutgoingMessage(long clientId, String sender, String receiver, String message) {
+    }
+
+    static final String MARK_SEEN = "INSERT INTO conversation_read_cursor (user_id, peer_id, last_read_id) " +
+            "SELECT ?, ?, COALESCE(MAX(id), 0) FROM chat_messages WHERE receiver_id = ? AND sender_id = ? " +
+            "ON DUPLICATE KEY UPDATE last_read_id = GREATEST(last_read_id, VALUES(last_read_id))";
+
+    private static final WriteBehindQueue<OutgoingMessage> OUTGOING = new WriteBehindQueue<>(
+            "private-message-writer",
+            "INSERT INTO chat_messages (sender_id, receiver_id, message, client_id) VALUES (?, ?, ?, ?)",
+            (conn, pstmt, message) -> {
+                pstmt.setInt(1, UserDirectory.requireIdOf(conn, message.sender()));
+                pstmt.setInt(2, UserDirectory.requireIdOf(conn, message.receiver()));
+                pstmt.setString(3, message.message());
+                pstmt.setLong(4, message.clientId());
+            },
+            (conn, messages, ids) -> {
+                ChatEvents.recordAll(conn, ChatEvents.PRIVATE_MESSAGE, ids,
+                        messages.stream().map(OutgoingMessage::sender).toList(),
+                        messages.stream().map(OutgoingMessage::receiver).toList());
+                ensureReadCursors(conn, messages);
+                ConversationSummary.recordSent(conn, ids,
+                        messages.stream().map(OutgoingMessage::sender).toList(),
+                        messages.stream().map(OutgoingMessage::receiver).toList(),
+                        messages.stream().map(OutgoingMessage::message).toList());
+            },
+            (conn, messages) -> MessageIds.findStored(conn, "chat_messages",
+                    messages.stream().map(OutgoingMessage::sender).toList(),
+                    messages.stream().map(OutgoingMessage::clientId).toList()));
+
+    /**
+     * Queues the message for the next batch insert; completes with the row id once it is committed.
+     * {@code clientId} (see {@link MessageIds}) makes the send idempotent.
+     */
+    public static CompletableFuture<Integer> save(long clientId, String sender, String receiver, String message) {
+        return OUTGOING.submit(new OutgoingMessage(clientId, sender, receiver, message));
+    }
+
+    /**
+     * Whole conversation for a freshly opened window; resets the sync watermarks.
+     */
+    public static CompletableFuture<List<PrivateChatSync.PrivateMessage>> loadConversation(PrivateChatSync sync) {
+        return DataAccess.supply(sync::loadAll);
+    }
+
+    /**
+     * Rows that are new or changed since the sync's watermarks.
+     */
+    public static CompletableFuture<List<PrivateChatSync.PrivateMessage>> fetchChanges(PrivateChatSync sync) {
+        return DataAccess.supply(sync::fetchChanges);
+    }
+
+    /**
+     * Moves the receiver's read cursor up to the newest message from {@code sender}; one upsert,
+     * no matter how many messages were unread.
+     */
+    public static CompletableFuture<Void> markConversationSeen(String sender, String receiver) {
+        return DataAccess.run(() -> {
+            try (Connection conn = DatabaseConnection.getConnection()) {
+                DataAccess.inTransaction(conn, () -> {
+                    int receiverId = UserDirectory.idOf(conn, receiver);
+                    int senderId = UserDirectory.idOf(conn, sender);
+                    try (PreparedStatement pstmt = conn.prepareStatement(MARK_SEEN)) {
+                        pstmt.setInt(1, receiverId);
+                        pstmt.setInt(2, senderId);
+                        pstmt.setInt(3, receiverId);
+                        pstmt.setInt(4, senderId);
+                        pstmt.executeUpdate();
+                    }
+                    ConversationSummary.markRead(conn, receiver, sender);
+                    ChatEvents.record(conn, ChatEvents.READ_RECEIPT, 0, receiver, sender); // the reader is the actor
+                });
+            }
+        });
+    }
+
+    /**
+     * Compare-and-set edit by primary key. Completes with {@code false} if the row is not the
+     * sender's, is deleted, or was changed since {@code expectedVersion} (e.g. from another window).
+     */
+    public static CompletableFuture<Boolean> updateMessageText(int messageId, String sender, int expectedVersion, String newMessage) {
+        return DataAccess.supply(() -> {
+            String query = "UPDATE chat_messages SET message = ?, version = version + 1 " +
+                    "WHERE id = ? AND sender_id = ? AND version = ? AND deleted = 0";
+
+            try (Connection conn = DatabaseConnection.getConnection()) {
+                return DataAccess.inTransaction(conn, () -> {
+                    try (PreparedStatement pstmt = conn.prepareStatement(query)) {
+                        pstmt.setString(1, newMessage);
+                        pstmt.setInt(2, messageId);
+                        pstmt.setInt(3, UserDirectory.idOf(conn, sender));
+                        pstmt.setInt(4, expectedVersion);
+                        if (pstmt.executeUpdate() == 0) return false;
+                    }
+                    ChatEvents.recordSelected(conn, "SELECT ?, id, sender_id, receiver_id FROM chat_messages WHERE id = ?",
+                            ChatEvents.PRIVATE_EDITED, messageId);
+                    ConversationSummary.updatePreview(conn, messageId);
+                    return true;
+                });
+            }
+        });
+    }
+
+    /**
+     * Compare-and-set soft delete, so open private chat windows pick the removal up through their
+     * change watermark. Completes with {@code false} if the row is not the sender's or changed since
+     * {@code expectedVersion}.
+     */
+    public static CompletableFuture<Boolean> delete(int messageId, String sender, int expectedVersion) {
+        return DataAccess.supply(() -> {
+            String query = "UPDATE chat_messages SET deleted = 1, version = version + 1 " +
+                    "WHERE id = ? AND sender_id = ? AND version = ? AND deleted = 0";
+
+            try (Connection conn = DatabaseConnection.getConnection()) {
+                return DataAccess.inTransaction(conn, () -> {
+                    try (PreparedStatement pstmt = conn.prepareStatement(query)) {
+                        pstmt.setInt(1, messageId);
+                        pstmt.setInt(2, UserDirectory.idOf(conn, sender));
+                        pstmt.setInt(3, expectedVersion);
+                        if (pstmt.executeUpdate() == 0) return false;
+                    }
+                    ChatEvents.recordSelected(conn, "SELECT ?, id, sender_id, receiver_id FROM chat_messages WHERE id = ?",
+                            ChatEvents.PRIVATE_DELETED, messageId);
+                    int[] pair = participants(conn, messageId);
+                    ConversationSummary.refresh(conn, UserDirectory.nameOf(conn, pair[0]), UserDirectory.nameOf(conn, pair[1]));
+                    return true;
+                });
+            }
+        });
+    }
+
+    // Every conversation gets a cursor row with its first message, so unread counts can be driven from the cursors
+    private static void ensureReadCursors(Connection conn, List<OutgoingMessage> messages) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "INSERT IGNORE INTO conversation_read_cursor (user_id, peer_id, last_read_id) VALUES (?, ?, 0)")) {
+            for (OutgoingMessage message : messages) {
+                pstmt.setInt(1, UserDirectory.requireIdOf(conn, message.receiver()));
+                pstmt.setInt(2, UserDirectory.requireIdOf(conn, message.sender()));
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
+    }
+
+    // {sender id, receiver id} of a message, or null if there is no such row
+    private static int[] participants(Connection conn, int messageId) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT sender_id, receiver_id FROM chat_messages WHERE id = ?")) {
+            pstmt.setInt(1, messageId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? new int[]{rs.getInt("sender_id"), rs.getInt("receiver_id")} : null;
+            }
+        }
+    }
+}
@@ -9,12 +9,9 @@ import javafx.scene.control.TextField;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.stage.FileChooser;
-import org.mindrot.jbcrypt.BCrypt;
 
 import java.io.File;
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
 
 public class ProfileController {
 
@@ -36,7 +33,7 @@ public class ProfileController {
     private void initialize() {
         String profilePic = SessionManager.getProfilePicture();
         if (profilePic != null && !profilePic.isEmpty()) {
-            profileImageView.setImage(new Image(profilePic));
+            profileImageView.setImage(AvatarCache.get(SessionManager.getUser(), profilePic, profileImageView.getFitWidth()));
         }
     }
 
@@ -51,7 +48,8 @@ public class ProfileController {
         File selectedFile = fileChooser.showOpenDialog(null);
         if (selectedFile != null) {
             profileImagePath = selectedFile.toURI().toString();
-            profileImageView.setImage(new Image(profileImagePath));
+            // Preview only; cached under the user once the upload is saved
+            profileImageView.setImage(new Image(profileImagePath, profileImageView.getFitWidth(), profileImageView.getFitHeight(), true, true, true));
         }
     }
 
@@ -60,107 +58,56 @@ public class ProfileController {
     private void handleUpdateProfile(ActionEvent event) {
         String newUsername = newUsernameField.getText().trim();
         String newPassword = newPasswordField.getText().trim();
-        boolean isProfileUpdated = false;
-
-        // Update profile picture if changed
-        if (profileImagePath != null) {
-            if (updateProfilePicture(profileImagePath)) {
-                showAlert(Alert.AlertType.INFORMATION, "Success", "Profile picture updated successfully.");
-                isProfileUpdated = true;
-            } else {
-                showAlert(Alert.AlertType.ERROR, "Update Failed", "Could not update profile picture.");
-            }
-        }
-
-        // Update username/password only if provided
-        if (!newUsername.isEmpty() || !newPassword.isEmpty()) {
-            if (updateUserProfile(newUsername, newPassword)) {
-                showAlert(Alert.AlertType.INFORMATION, "Success", "Profile details updated successfully.");
-                isProfileUpdated = true;
-            } else {
-                showAlert(Alert.AlertType.ERROR, "Update Failed", "Could not update profile details.");
-            }
-        }
-
-        // If no update was done, show a message
-        if (!isProfileUpdated) {
-            showAlert(Alert.AlertType.WARNING, "No Changes", "No changes were made.");
-        }
-    }
-
-    // Update only the profile picture
-    private boolean updateProfilePicture(String imagePath) {
-        String query = "UPDATE users SET profile_picture = ? WHERE username = ?";
-
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(query)) {
-
-            pstmt.setString(1, imagePath);
-            pstmt.setString(2, SessionManager.getUser()); // Use logged-in user
-
-            int rowsUpdated = pstmt.executeUpdate();
-            return rowsUpdated > 0;
-
-        } catch (SQLException e) {
-            e.printStackTrace();
-            return false;
-        }
-    }
-
-    // Update the user profile in the database
-    private boolean updateUserProfile(String newUsername, String newPassword) {
-        boolean usernameChanged = !newUsername.isEmpty();
-        boolean passwordChanged = !newPassword.isEmpty();
-
-        // If neither username nor password is changed, return false
-        if (!usernameChanged && !passwordChanged) {
-            return false;
-        }
-
-        StringBuilder query = new StringBuilder("UPDATE users SET ");
-        boolean needComma = false;
-
-        if (usernameChanged) {
-            query.append("username = ?");
-            needComma = true;
-        }
-
-        if (passwordChanged) {
-            if (needComma) query.append(", ");
-            query.append("password = ?");
-        }
-
-        query.append(" WHERE username = ?");
-
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(query.toString())) {
-
-            int index = 1;
-            if (usernameChanged) {
-                pstmt.setString(index++, newUsername);
-            }
-            if (passwordChanged) {
-                pstmt.setString(index++, hashPassword(newPassword));
+        String imagePath = profileImagePath;
+        String currentUser = SessionManager.getUser();
+
+        // Picture first: both updates find the user by the current name, which the details update may change
+        CompletableFuture<Boolean> pictureUpdate = imagePath != null
+                ? UserRepository.updateProfilePicture(currentUser, imagePath).exceptionally(this::failed)
+                : CompletableFuture.completedFuture(null);
+        CompletableFuture<Boolean> detailsUpdate = pictureUpdate.thenCompose(ignored -> !newUsername.isEmpty() || !newPassword.isEmpty()
+                ? UserRepository.updateUserProfile(currentUser, newUsername, newPassword).exceptionally(this::failed)
+                : CompletableFuture.completedFuture(null));
+
+        pictureUpdate.thenAcceptBothAsync(detailsUpdate, (pictureUpdated, detailsUpdated) -> {
+            boolean isProfileUpdated = false;
+
+            // Update profile picture if changed
+            if (pictureUpdated != null) {
+                if (pictureUpdated) {
+                    SessionManager.setProfilePicture(imagePath);
+                    AvatarCache.invalidate(currentUser);
+                    showAlert(Alert.AlertType.INFORMATION, "Success", "Profile picture updated successfully.");
+                    isProfileUpdated = true;
+                } else {
+                    showAlert(Alert.AlertType.ERROR, "Update Failed", "Could not update profile picture.");
+                }
             }
-            pstmt.setString(index, SessionManager.getUser()); // Where clause
 
-            int rowsUpdated = pstmt.executeUpdate();
-            if (rowsUpdated > 0) {
-                if (usernameChanged) {
-                    SessionManager.setUser(newUsername); // Update session username
+            // Update username/password only if provided
+            if (detailsUpdated != null) {
+                if (detailsUpdated) {
+                    if (!newUsername.isEmpty()) {
+                        SessionManager.setUser(newUsername); // Update session username
+                        ChatPushClient.connect(newUsername, SessionManager.getPushToken()); // subscribe under the new name
+                    }
+                    showAlert(Alert.AlertType.INFORMATION, "Success", "Profile details updated successfully.");
+                    isProfileUpdated = true;
+                } else {
+                    showAlert(Alert.AlertType.ERROR, "Update Failed", "Could not update profile details.");
                 }
-                return true;
             }
 
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return false;
+            // If no update was done, show a message
+            if (!isProfileUpdated) {
+                showAlert(Alert.AlertType.WARNING, "No Changes", "No changes were made.");
+            }
+        }, DataAccess.FX);
     }
 
-    // Hash password using BCrypt
-    private String hashPassword(String plainPassword) {
-        return BCrypt.hashpw(plainPassword, BCrypt.gensalt(12));
+    private Boolean failed(Throwable error) {
+        DataAccess.logFailure(error);
+        return false;
     }
 
     // Show alert method
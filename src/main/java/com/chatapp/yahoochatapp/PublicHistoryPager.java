@@ -0,0 +1,146 @@
+package com.chatapp.yahoochatapp;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keyset pagination over {@code public_messages}, ordered by (timestamp, id).
+ *
+ * Every page is a bounded index range scan starting from a cursor, so the cost of a page does
+ * not depend on how old the room is (unlike LIMIT/OFFSET or loading the whole table).
+ */
+public class PublicHistoryPager {
+
+    // Both can be overridden with -Dchatapp.history.pageSize / -Dchatapp.history.maxPages
+    private static final int PAGE_SIZE = Math.max(1, Integer.getInteger("chatapp.history.pageSize", 50));
+    private static final int MAX_PAGES = Math.max(2, Integer.getInteger("chatapp.history.maxPages", 10));
+
+    private static final String COLUMNS = "SELECT id, sender_id, content, timestamp, version FROM public_messages ";
+
+    // Package-private so QueryPlanCheck EXPLAINs the same statements the pager runs
+    static final String NEWEST = COLUMNS + "ORDER BY timestamp DESC, id DESC LIMIT ?";
+    static final String OLDER = COLUMNS + "WHERE timestamp < ? OR (timestamp = ? AND id < ?) " +
+            "ORDER BY timestamp DESC, id DESC LIMIT ?";
+    static final String NEWER = COLUMNS + "WHERE timestamp > ? OR (timestamp = ? AND id > ?) " +
+            "ORDER BY timestamp ASC, id ASC LIMIT ?";
+
+    public record PublicMessage(int id, String sender, String content, Timestamp timestamp, int version) {
+        public Cursor cursor() {
+            return new Cursor(timestamp, id);
+        }
+    }
+
+    /**
+     * Position in the (timestamp, id) ordering.
+     */
+    public record Cursor(Timestamp timestamp, int id) {
+    }
+
+    /**
+     * One page in ascending order; {@code hasMore} tells whether another page exists beyond it.
+     */
+    public record Page(List<PublicMessage> messages, boolean hasMore) {
+    }
+
+    public static int getPageSize() {
+        return PAGE_SIZE;
+    }
+
+    public static int getMaxPages() {
+        return MAX_PAGES;
+    }
+
+    public static Page loadNewest() throws SQLException {
+        return fetch(NEWEST, null, true);
+    }
+
+    public static Page loadOlder(Cursor before) throws SQLException {
+        return fetch(OLDER, before, true);
+    }
+
+    public static Page loadNewer(Cursor after) throws SQLException {
+        return fetch(NEWER, after, false);
+    }
+
+    /**
+     * Specific messages by primary key, in display order; ids that no longer exist are skipped.
+     */
+    public static List<PublicMessage> loadByIds(List<Integer> ids) throws SQLException {
+        List<PublicMessage> messages = new ArrayList<>();
+        if (ids.isEmpty()) return messages;
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(byIdsQuery(ids.size()))) {
+
+            for (int i = 0; i < ids.size(); i++) {
+                pstmt.setInt(i + 1, ids.get(i));
+            }
+            messages.addAll(readMessages(conn, pstmt));
+        }
+        return messages;
+    }
+
+    static String byIdsQuery(int ids) {
+        return COLUMNS + "WHERE id IN (" + InteractionSnapshot.placeholders(ids) + ") ORDER BY timestamp, id";
+    }
+
+    private static Page fetch(String query, Cursor cursor, boolean descending) throws SQLException {
+        List<PublicMessage> messages = new ArrayList<>();
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(query)) {
+
+            int index = 1;
+            if (cursor != null) {
+                pstmt.setTimestamp(index++, cursor.timestamp());
+                pstmt.setTimestamp(index++, cursor.timestamp());
+                pstmt.setInt(index++, cursor.id());
+            }
+            pstmt.setInt(index, PAGE_SIZE + 1); // one extra row tells us whether there is another page
+
+            messages.addAll(readMessages(conn, pstmt));
+        }
+
+        boolean hasMore = messages.size() > PAGE_SIZE;
+        if (hasMore) {
+            messages.remove(messages.size() - 1);
+        }
+        if (descending) {
+            Collections.reverse(messages);
+        }
+        return new Page(messages, hasMore);
+    }
+
+    // Sender ids of the whole page are turned into names with one directory lookup
+    private static List<PublicMessage> readMessages(Connection conn, PreparedStatement pstmt) throws SQLException {
+        List<PublicMessage> rows = new ArrayList<>();
+        List<Integer> senderIds = new ArrayList<>();
+        try (ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                senderIds.add(rs.getInt("sender_id"));
+                rows.add(new PublicMessage(
+                        rs.getInt("id"),
+                        null,
+                        rs.getString("content"),
+                        rs.getTimestamp("timestamp"),
+                        rs.getInt("version")));
+            }
+        }
+
+        Map<Integer, String> names = UserDirectory.namesOf(conn, senderIds);
+        List<PublicMessage> messages = new ArrayList<>(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            PublicMessage row = rows.get(i);
+            messages.add(new PublicMessage(row.id(), names.getOrDefault(senderIds.get(i), "Unknown"),
+                    row.content(), row.timestamp(), row.version()));
+        }
+        return messages;
+    }
+}
@@ -0,0 +1,210 @@
+package com.chatapp.yahoochatapp;
+
+import javafx.beans.binding.Bindings;
+import javafx.collections.ListChangeListener;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.control.Button;
+import javafx.scene.control.ContextMenu;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.MenuItem;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.VBox;
+import javafx.scene.shape.Circle;
+
+/**
+ * Recycled cell for the public chat list.
+ *
+ * The bubble's nodes are built once per cell; {@link #updateItem} only rebinds them to the
+ * {@link ChatMessage} that scrolled into view, so the scene graph stays the size of the
+ * viewport no matter how much history is loaded. Labels are bound to the row's
+ * {@link MessageState}, so a like, comment or edit repaints only what changed.
+ */
+public class PublicMessageCell extends ListCell<ChatMessage> {
+
+    /**
+     * What the bubble's buttons and menu items do; implemented by the controller.
+     */
+    public interface Actions {
+        void like(ChatMessage message);
+
+        void comment(ChatMessage message);
+
+        void edit(ChatMessage message);
+
+        void delete(ChatMessage message);
+    }
+
+    private static final double AVATAR_SIZE = 30;
+    private static final String LIKED_STYLE = "-fx-background-color: #cce5ff;"; // Light blue if liked
+    private static final String NOT_LIKED_STYLE = "-fx-background-color: transparent;";
+    private static final String STATUS_STYLE = "-fx-font-size: 10px; -fx-text-fill: gray;";
+    private static final String FAILED_STATUS_STYLE = "-fx-font-size: 10px; -fx-text-fill: red;";
+
+    private final ImageView profileView = new ImageView();
+    private final Label senderLabel = new Label();
+    private final Label messageLabel = new Label();
+    private final Label timeLabel = new Label();
+    private final Label statusLabel = new Label();
+    private final Button likeBtn = new Button("👍");
+    private final Label likeCountLabel = new Label();
+    private final Button commentBtn = new Button("💬");
+    private final Label commentCountLabel = new Label();
+    private final VBox commentBox = new VBox();
+    private final HBox messageBox;
+
+    private final Label typingLabel = new Label();
+    private final HBox typingBox;
+
+    private final ContextMenu ownMessageMenu = new ContextMenu();
+
+    // State the labels are currently bound to, and the listener mirroring its comments
+    private MessageState boundState;
+    private final ListChangeListener<InteractionSnapshot.Comment> commentListener = change -> showComments();
+
+    public PublicMessageCell(Actions actions) {
+        // 🖼 Profile image, clipped to a circle
+        profileView.setFitWidth(AVATAR_SIZE);
+        profileView.setFitHeight(AVATAR_SIZE);
+        profileView.setPreserveRatio(true);
+        profileView.setClip(new Circle(AVATAR_SIZE / 2, AVATAR_SIZE / 2, AVATAR_SIZE / 2));
+
+        // 👤 Sender label
+        senderLabel.setStyle("-fx-font-weight: bold; -fx-text-fill: #333;");
+        HBox headerBox = new HBox(profileView, senderLabel);
+        headerBox.setSpacing(10);
+        headerBox.setAlignment(Pos.CENTER_LEFT);
+
+        // 💬 Message content
+        messageLabel.setWrapText(true);
+        messageLabel.setMaxWidth(250);
+
+        // ⏰ Time and delivery status
+        timeLabel.setStyle("-fx-font-size: 10px; -fx-text-fill: gray;");
+        HBox timeBox = new HBox(5, timeLabel, statusLabel);
+
+        // 👍 Like and 💬 comment buttons with their counts
+        likeBtn.setOnAction(e -> actions.like(getItem()));
+        VBox likeBox = new VBox(likeBtn, likeCountLabel);
+        likeBox.setAlignment(Pos.CENTER);
+
+        commentBtn.setOnAction(e -> actions.comment(getItem()));
+        VBox commentBoxButton = new VBox(commentBtn, commentCountLabel);
+        commentBoxButton.setAlignment(Pos.CENTER);
+
+        HBox interactionBar = new HBox(likeBox, commentBoxButton);
+        interactionBar.setSpacing(10);
+
+        // 🗨️ Comments below message
+        commentBox.setSpacing(3);
+        commentBox.setPadding(new Insets(5, 0, 0, 10));
+
+        VBox messageContainer = new VBox(headerBox, messageLabel, timeBox, interactionBar, commentBox);
+        messageContainer.setSpacing(5);
+
+        messageBox = new HBox(messageContainer);
+        messageBox.setPadding(new Insets(5, 10, 5, 10));
+
+        typingLabel.setStyle("-fx-font-size: 12px; -fx-text-fill: gray; -fx-padding: 5px;");
+        typingBox = new HBox(typingLabel);
+        typingBox.setAlignment(Pos.CENTER_LEFT);
+        typingBox.setPadding(new Insets(5, 50, 5, 10));
+
+        // ✏️ / 🗑 Only shown on the logged-in user's own messages
+        MenuItem editItem = new MenuItem("Edit");
+        editItem.setOnAction(e -> actions.edit(getItem()));
+        MenuItem deleteItem = new MenuItem("Delete");
+        deleteItem.setOnAction(e -> actions.delete(getItem()));
+        ownMessageMenu.getItems().addAll(editItem, deleteItem);
+
+        setText(null);
+    }
+
+    @Override
+    protected void updateItem(ChatMessage message, boolean empty) {
+        super.updateItem(message, empty);
+        unbind();
+
+        if (empty || message == null) {
+            setGraphic(null);
+            setContextMenu(null);
+            return;
+        }
+
+        if (!message.isMessage()) {
+            typingLabel.setText(message.state().getContent());
+            setGraphic(typingBox);
+            setContextMenu(null);
+            return;
+        }
+
+        boolean mine = message.sender().equals(SessionManager.getUser());
+
+        Image avatar = AvatarCache.get(message.sender(), message.avatarPath(), AVATAR_SIZE); // shared, decoded at 30x30
+        profileView.setImage(avatar);
+        profileView.setVisible(avatar != null);
+        profileView.setManaged(avatar != null);
+
+        senderLabel.setText(message.sender() + ":");
+        timeLabel.setText(message.time());
+        bind(message.state());
+
+        // 🔒 Cached rows have no counts yet, and an action on them would be lost when the database page arrives
+        boolean interactive = !message.state().isCached();
+        likeBtn.setDisable(!interactive);
+        commentBtn.setDisable(!interactive);
+        likeCountLabel.setVisible(interactive);
+        commentCountLabel.setVisible(interactive);
+
+        messageBox.setAlignment(mine ? Pos.CENTER_RIGHT : Pos.CENTER_LEFT);
+        setGraphic(messageBox);
+        setContextMenu(mine && interactive ? ownMessageMenu : null);
+    }
+
+    private void bind(MessageState state) {
+        boundState = state;
+
+        messageLabel.textProperty().bind(state.contentProperty());
+        statusLabel.textProperty().bind(state.statusProperty());
+        statusLabel.styleProperty().bind(Bindings.when(state.statusProperty().isEqualTo(ChatMessage.STATUS_FAILED))
+                .then(FAILED_STATUS_STYLE).otherwise(STATUS_STYLE));
+
+        likeBtn.styleProperty().bind(Bindings.when(state.likedByViewerProperty()).then(LIKED_STYLE).otherwise(NOT_LIKED_STYLE));
+        likeCountLabel.textProperty().bind(state.likeCountProperty().asString());
+        commentCountLabel.textProperty().bind(state.commentCountProperty().asString());
+
+        state.getComments().addListener(commentListener);
+        showComments();
+    }
+
+    private void unbind() {
+        if (boundState == null) return;
+
+        messageLabel.textProperty().unbind();
+        statusLabel.textProperty().unbind();
+        statusLabel.styleProperty().unbind();
+        likeBtn.styleProperty().unbind();
+        likeCountLabel.textProperty().unbind();
+        commentCountLabel.textProperty().unbind();
+        boundState.getComments().removeListener(commentListener);
+        boundState = null;
+    }
+
+    private void showComments() {
+        commentBox.getChildren().clear();
+        for (InteractionSnapshot.Comment comment : boundState.getComments()) {
+            commentBox.getChildren().add(createCommentLabel(comment));
+        }
+    }
+
+    private Label createCommentLabel(InteractionSnapshot.Comment comment) {
+        Label label = new Label(comment.user() + ": " + comment.text());
+        label.setStyle("-fx-font-size: 12px; -fx-text-fill: #555;");
+        label.setWrapText(true);
+        label.setMaxWidth(220);
+        return label;
+    }
+}
@@ -0,0 +1,247 @@
+package com.chatapp.yahoochatapp;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Public chat ({@code public_messages} and {@code message_interactions}) queries.
+ * Every method runs off the JavaFX thread.
+ */
+public class PublicMessageRepository {
+
+    /**
+     * A page of history together with the interactions needed to render it.
+     */
+    public record PageData(PublicHistoryPager.Page page, InteractionSnapshot snapshot) {
+    }
+
+    /**
+     * Everything needed to re-render one bubble.
+     */
+    public record BubbleData(String sender, String content, String timestamp, int version, InteractionSnapshot snapshot) {
+    }
+
+    private static final String PUBLIC_CACHE = "public";
+
+    private record OutgoingMessage(long clientId, String sender, String content) {
+    }
+
+    private static final WriteBehindQueue<OutgoingMessage> OUTGOING = new WriteBehindQueue<>(
+            "public-message-writer",
+            "INSERT INTO public_messages (sender_id, content, client_id) VALUES (?, ?, ?)",
+            (conn, pstmt, message) -> {
+                pstmt.setInt(1, UserDirectory.requireIdOf(conn, message.sender()));
+                pstmt.setString(2, message.content());
+                pstmt.setLong(3, message.clientId());
+            },
+            (conn, messages, ids) -> ChatEvents.recordAll(conn, ChatEvents.PUBLIC_MESSAGE, ids,
+                    messages.stream().map(OutgoingMessage::sender).toList(), null),
+            (conn, messages) -> MessageIds.findStored(conn, "public_messages",
+                    messages.stream().map(OutgoingMessage::sender).toList(),
+                    messages.stream().map(OutgoingMessage::clientId).toList()));
+
+    /**
+     * The newest page; also kept in the {@link HistoryCache} for the next window to start from.
+     */
+    public static CompletableFuture<PageData> loadNewestPage(String viewer) {
+        return DataAccess.supply(() -> {
+            PublicHistoryPager.Page page = PublicHistoryPager.loadNewest();
+            HistoryCache.replace(viewer, PUBLIC_CACHE, page.messages().stream()
+                    .map(message -> new HistoryCache.CachedMessage(message.id(), message.sender(), message.content(), false,
+                            message.timestamp().getTime(), message.version()))
+                    .toList());
+            return withSnapshot(page, viewer);
+        });
+    }
+
+    /**
+     * The newest page as cached by the previous window, without interactions; rendered until
+     * {@link #loadNewestPage} answers. Empty if nothing is cached.
+     */
+    public static CompletableFuture<List<PublicHistoryPager.PublicMessage>> loadCachedNewestPage(String viewer) {
+        return DataAccess.supply(() -> HistoryCache.read(viewer, PUBLIC_CACHE).stream()
+                .map(cached -> new PublicHistoryPager.PublicMessage(cached.id(), cached.sender(), cached.text(),
+                        new Timestamp(cached.updatedAt()), cached.version()))
+                .sorted(Comparator.comparing(PublicHistoryPager.PublicMessage::timestamp)
+                        .thenComparingInt(PublicHistoryPager.PublicMessage::id))
+                .toList());
+    }
+
+    public static CompletableFuture<PageData> loadOlderPage(PublicHistoryPager.Cursor before, String viewer) {
+        return DataAccess.supply(() -> withSnapshot(PublicHistoryPager.loadOlder(before), viewer));
+    }
+
+    public static CompletableFuture<PageData> loadNewerPage(PublicHistoryPager.Cursor after, String viewer) {
+        return DataAccess.supply(() -> withSnapshot(PublicHistoryPager.loadNewer(after), viewer));
+    }
+
+    /**
+     * Specific messages (e.g. new ones from the change log), oldest first, with their interactions.
+     */
+    public static CompletableFuture<PageData> loadMessages(List<Integer> messageIds, String viewer) {
+        return DataAccess.supply(() -> withSnapshot(new PublicHistoryPager.Page(PublicHistoryPager.loadByIds(messageIds), false), viewer));
+    }
+
+    public static CompletableFuture<InteractionSnapshot> loadSnapshot(List<PublicHistoryPager.PublicMessage> messages, String viewer) {
+        return DataAccess.supply(() -> snapshotFor(messages, viewer));
+    }
+
+    public static CompletableFuture<BubbleData> loadBubble(int messageId, String viewer) {
+        return DataAccess.supply(() -> {
+            try (Connection conn = DatabaseConnection.getConnection()) {
+                String sender = "Unknown"; // fallback
+                String content = "[Message not found]";
+                String timestamp = "";
+                int version = 0;
+
+                // One primary-key lookup for the whole row
+                try (PreparedStatement stmt = conn.prepareStatement("SELECT sender_id, content, timestamp, version FROM public_messages WHERE id = ?")) {
+                    stmt.setInt(1, messageId);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        if (rs.next()) {
+                            String name = UserDirectory.nameOf(conn, rs.getInt("sender_id"));
+                            if (name != null) sender = name;
+                            content = rs.getString("content");
+                            timestamp = rs.getString("timestamp");
+                            version = rs.getInt("version");
+                        }
+                    }
+                }
+
+                InteractionSnapshot snapshot = InteractionSnapshot.load(List.of(messageId), List.of(sender), viewer);
+                return new BubbleData(sender, content, timestamp, version, snapshot);
+            }
+        });
+    }
+
+    /**
+     * Queues the message for the next batch insert; completes with the row id once it is committed.
+     * {@code clientId} (see {@link MessageIds}) makes the send idempotent: a retried batch never
+     * stores the message twice.
+     */
+    public static CompletableFuture<Integer> save(long clientId, String sender, String message) {
+        return OUTGOING.submit(new OutgoingMessage(clientId, sender, message));
+    }
+
+    /**
+     * Compare-and-set edit by primary key; completes with {@code false} if the message was changed
+     * or deleted since {@code expectedVersion}.
+     */
+    public static CompletableFuture<Boolean> update(int messageId, int expectedVersion, String newMessage) {
+        return DataAccess.supply(() -> {
+            String sql = "UPDATE public_messages SET content = ?, version = version + 1 WHERE id = ? AND version = ?";
+            try (Connection conn = DatabaseConnection.getConnection()) {
+                return DataAccess.inTransaction(conn, () -> {
+                    try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                        pstmt.setString(1, newMessage);
+                        pstmt.setInt(2, messageId);
+                        pstmt.setInt(3, expectedVersion);
+                        if (pstmt.executeUpdate() == 0) return false;
+                    }
+                    recordPublicEvent(conn, ChatEvents.PUBLIC_EDITED, messageId);
+                    return true;
+                });
+            }
+        });
+    }
+
+    /**
+     * Completes with {@code false} if the message was changed or already deleted since {@code expectedVersion}.
+     */
+    public static CompletableFuture<Boolean> delete(int messageId, int expectedVersion) {
+        return DataAccess.supply(() -> {
+            String sql = "DELETE FROM public_messages WHERE id = ? AND version = ?";
+            try (Connection conn = DatabaseConnection.getConnection()) {
+                return DataAccess.inTransaction(conn, () -> {
+                    // Before the row (and its sender) is gone; the INSERT ... SELECT also locks the row until commit
+                    int matched = ChatEvents.recordSelected(conn,
+                            "SELECT ?, id, sender_id, NULL FROM public_messages WHERE id = ? AND version = ?",
+                            ChatEvents.PUBLIC_DELETED, messageId, expectedVersion);
+                    if (matched == 0) return false;
+
+                    try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                        pstmt.setInt(1, messageId);
+                        pstmt.setInt(2, expectedVersion);
+                        pstmt.executeUpdate();
+                    }
+                    return true;
+                });
+            }
+        });
+    }
+
+    /**
+     * Completes with {@code false} if the user had already liked the message. The unique like key
+     * (see V13 migration) turns a second insert into a no-op, so the counter and the change log
+     * only move for the like that was actually stored.
+     */
+    public static CompletableFuture<Boolean> like(int messageId, String user) {
+        return DataAccess.supply(() -> {
+            String insertQuery = "INSERT IGNORE INTO message_interactions (message_id, user_id, type) VALUES (?, ?, " + InteractionSnapshot.LIKE + ")";
+
+            try (Connection conn = DatabaseConnection.getConnection()) {
+                return DataAccess.inTransaction(conn, () -> {
+                    try (PreparedStatement insertStmt = conn.prepareStatement(insertQuery)) {
+                        insertStmt.setInt(1, messageId);
+                        insertStmt.setInt(2, UserDirectory.requireIdOf(conn, user));
+                        if (insertStmt.executeUpdate() != 1) {
+                            return false; // Already liked – prevent multiple likes
+                        }
+                    }
+                    bumpCounter(conn, "like_count", messageId);
+                    ChatEvents.record(conn, ChatEvents.PUBLIC_LIKED, messageId, user, null);
+                    return true;
+                });
+            }
+        });
+    }
+
+    public static CompletableFuture<Void> saveComment(int messageId, String sender, String commentText) {
+        return DataAccess.run(() -> {
+            String query = "INSERT INTO message_interactions (message_id, user_id, type, comment_text) VALUES (?, ?, " + InteractionSnapshot.COMMENT + ", ?)";
+
+            try (Connection conn = DatabaseConnection.getConnection()) {
+                DataAccess.inTransaction(conn, () -> {
+                    try (PreparedStatement pstmt = conn.prepareStatement(query)) {
+                        pstmt.setInt(1, messageId);
+                        pstmt.setInt(2, UserDirectory.requireIdOf(conn, sender));
+                        pstmt.setString(3, commentText);
+                        pstmt.executeUpdate();
+                    }
+                    bumpCounter(conn, "comment_count", messageId);
+                    ChatEvents.record(conn, ChatEvents.PUBLIC_COMMENTED, messageId, sender, null);
+                });
+            }
+        });
+    }
+
+    // Actor is the message's sender
+    private static void recordPublicEvent(Connection conn, String type, int messageId) throws SQLException {
+        ChatEvents.recordSelected(conn, "SELECT ?, id, sender_id, NULL FROM public_messages WHERE id = ?", type, messageId);
+    }
+
+    // column is one of the two fixed counter names, never user input
+    private static void bumpCounter(Connection conn, String column, int messageId) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("UPDATE public_messages SET " + column + " = " + column + " + 1 WHERE id = ?")) {
+            pstmt.setInt(1, messageId);
+            pstmt.executeUpdate();
+        }
+    }
+
+    private static PageData withSnapshot(PublicHistoryPager.Page page, String viewer) {
+        return new PageData(page, snapshotFor(page.messages(), viewer));
+    }
+
+    private static InteractionSnapshot snapshotFor(List<PublicHistoryPager.PublicMessage> messages, String viewer) {
+        return InteractionSnapshot.load(
+                messages.stream().map(PublicHistoryPager.PublicMessage::id).toList(),
+                messages.stream().map(PublicHistoryPager.PublicMessage::sender).toList(),
+                viewer);
+    }
+}
@@ -0,0 +1,80 @@
+package com.chatapp.yahoochatapp;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Base64;
+
+/**
+ * Tokens that prove to the chat server who is on the other end of a push socket (see V2 and V10
+ * migrations). A token is issued after a successful password check, sent in the HELLO frame, and
+ * valid for {@code chatapp.push.tokenHours} (30 days by default) or until the user logs out.
+ */
+public class PushSessions {
+
+    private static final long TOKEN_MILLIS = Math.max(1, Long.getLong("chatapp.push.tokenHours", 30 * 24)) * 3_600_000L;
+    private static final SecureRandom random = new SecureRandom();
+
+    /**
+     * A new token for the user, or {@code null} if there is no such user.
+     */
+    public static String issue(Connection conn, String username) throws SQLException {
+        byte[] bytes = new byte[32];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+        String query = "INSERT INTO push_sessions (token_hash, user_id, expires_at) SELECT ?, id, ? FROM users WHERE username = ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(query)) {
+            pstmt.setBytes(1, hash(token));
+            pstmt.setTimestamp(2, new Timestamp(System.currentTimeMillis() + TOKEN_MILLIS));
+            pstmt.setString(3, username);
+            if (pstmt.executeUpdate() == 0) return null;
+        }
+
+        // Expired tokens of this user are no use to anyone
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "DELETE s FROM push_sessions s JOIN users u ON u.id = s.user_id WHERE u.username = ? AND s.expires_at < NOW()")) {
+            pstmt.setString(1, username);
+            pstmt.executeUpdate();
+        }
+        return token;
+    }
+
+    /**
+     * The current username of the token's owner, or {@code null} if the token is unknown or
+     * expired. Read from {@code users}, so a session survives a rename.
+     */
+    public static String verify(Connection conn, String token) throws SQLException {
+        if (token == null || token.isEmpty()) return null;
+
+        String query = "SELECT u.username FROM push_sessions s JOIN users u ON u.id = s.user_id "
+                + "WHERE s.token_hash = ? AND s.expires_at > NOW()";
+        try (PreparedStatement pstmt = conn.prepareStatement(query)) {
+            pstmt.setBytes(1, hash(token));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getString("username") : null;
+            }
+        }
+    }
+
+    public static void revoke(Connection conn, String token) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("DELETE FROM push_sessions WHERE token_hash = ?")) {
+            pstmt.setBytes(1, hash(token));
+            pstmt.executeUpdate();
+        }
+    }
+
+    private static byte[] hash(String token) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // every JRE ships SHA-256
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.chatapp.yahoochatapp;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * Startup check that EXPLAINs the hot queries and warns when MySQL plans a full table scan,
+ * e.g. because an index from the migrations is missing or was dropped by hand.
+ */
+public class QueryPlanCheck {
+
+    private record HotQuery(String name, String sql, Object... params) {
+    }
+
+    private static final Timestamp SAMPLE_TIME = new Timestamp(0);
+
+    // The statements are the repositories' own, so the check cannot drift from what actually runs
+    private static final List<HotQuery> HOT_QUERIES = List.of(
+            new HotQuery("private conversation", PrivateChatSync.LOAD_ALL,
+                    1, 2, 2, 1),
+            new HotQuery("private conversation changes", PrivateChatSync.deltaQuery(2),
+                    1, 2, 2, 1, 0, SAMPLE_TIME, 1, 3, 3, 1, 0, SAMPLE_TIME),
+            new HotQuery("inbox", ConversationSummary.INBOX,
+                    1),
+            new HotQuery("unread recount", ConversationSummary.RECOUNT,
+                    1, 2),
+            new HotQuery("mark conversation seen", PrivateMessageRepository.MARK_SEEN,
+                    1, 2, 1, 2),
+            new HotQuery("stored send by client id", MessageIds.storedQuery("chat_messages", 2),
+                    1, 1L, 1, 2L),
+            new HotQuery("stored post by client id", MessageIds.storedQuery("public_messages", 2),
+                    1, 1L, 1, 2L),
+            new HotQuery("interaction counters", InteractionSnapshot.countersQuery(2),
+                    1, 2),
+            new HotQuery("liked by viewer", InteractionSnapshot.viewerLikesQuery(2),
+                    1, 2, 1),
+            new HotQuery("comments", InteractionSnapshot.commentsQuery(2),
+                    1, 2),
+            new HotQuery("friend edges", FriendRepository.FRIEND_EDGES,
+                    1, 1),
+            new HotQuery("change log poll", ChatEvents.POLL,
+                    0L),
+            new HotQuery("public messages by id", PublicHistoryPager.byIdsQuery(2),
+                    1, 2),
+            new HotQuery("public history newest page", PublicHistoryPager.NEWEST,
+                    PublicHistoryPager.getPageSize() + 1),
+            new HotQuery("public history older page", PublicHistoryPager.OLDER,
+                    SAMPLE_TIME, SAMPLE_TIME, 1, PublicHistoryPager.getPageSize() + 1),
+            new HotQuery("public history newer page", PublicHistoryPager.NEWER,
+                    SAMPLE_TIME, SAMPLE_TIME, 1, PublicHistoryPager.getPageSize() + 1)
+    );
+
+    /**
+     * Logs a warning for every hot query whose plan contains a full table scan. Never throws.
+     */
+    public static void run() {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            for (HotQuery query : HOT_QUERIES) {
+                check(conn, query);
+            }
+        } catch (SQLException e) {
+            System.err.println("⚠️ Query plan check skipped: " + e.getMessage());
+        }
+    }
+
+    private static void check(Connection conn, HotQuery query) {
+        try (PreparedStatement pstmt = conn.prepareStatement("EXPLAIN " + query.sql())) {
+            for (int i = 0; i < query.params().length; i++) {
+                pstmt.setObject(i + 1, query.params()[i]);
+            }
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    if ("ALL".equals(rs.getString("type"))) {
+                        System.err.println("⚠️ Full table scan on " + rs.getString("table") + " for \"" + query.name() + "\"" +
+                                " (possible keys: " + rs.getString("possible_keys") + ", ~" + rs.getLong("rows") + " rows)." +
+                                " Small tables may be scanned on purpose; otherwise check the db/migration indexes.");
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("⚠️ Could not EXPLAIN \"" + query.name() + "\": " + e.getMessage());
+        }
+    }
+}
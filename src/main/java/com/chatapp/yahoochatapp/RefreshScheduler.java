@@ -0,0 +1,222 @@
+package com.chatapp.yahoochatapp;
+
+import javafx.application.Platform;
+import javafx.event.EventHandler;
+import javafx.scene.input.InputEvent;
+import javafx.stage.Stage;
+import javafx.stage.WindowEvent;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * One application-wide scheduler for the fallback polling that runs while the chat server is
+ * unreachable, instead of a sleeping thread per window.
+ *
+ * Every registered task belongs to a window and has a base interval. The interval is stretched
+ * while the window is unfocused and keeps doubling while nobody touches it, up to
+ * {@code chatapp.refresh.maxIntervalMs} (60 s by default); any input or regaining focus resets it.
+ *
+ * When any task is due, the scheduler reads the {@link ChatEvents} log once. If nothing changed
+ * that is the whole cost. Otherwise every task gets the new events, and the private conversations
+ * they touch are refreshed together in a single batched query. Tasks are cancelled automatically
+ * when their window is hidden.
+ */
+public class RefreshScheduler {
+
+    private static final long TICK_MILLIS = 1_000;
+    private static final long MAX_INTERVAL_MILLIS = Math.max(TICK_MILLIS, Long.getLong("chatapp.refresh.maxIntervalMs", 60_000));
+    private static final int UNFOCUSED_FACTOR = 4;
+    private static final long IDLE_STEP_MILLIS = 60_000; // interval doubles per idle minute
+
+    /**
+     * A registered poll; cancel it to stop polling before the window closes.
+     */
+    public static class Task {
+        private final long baseMillis;
+        private final Consumer<List<ChatEvents.Event>> onEvents; // plain task, or
+        private final Supplier<PrivateChatSync> conversation;    // a conversation refreshed in the batched query
+        private final Consumer<List<PrivateChatSync.PrivateMessage>> onChanges;
+
+        private volatile boolean focused = true;
+        private volatile long lastActivity = System.currentTimeMillis();
+        private volatile boolean cancelled = false;
+        private volatile long nextDue;
+
+        private Task(long baseMillis, Consumer<List<ChatEvents.Event>> onEvents, Supplier<PrivateChatSync> conversation,
+                     Consumer<List<PrivateChatSync.PrivateMessage>> onChanges) {
+            this.baseMillis = baseMillis;
+            this.onEvents = onEvents;
+            this.conversation = conversation;
+            this.onChanges = onChanges;
+            this.nextDue = System.currentTimeMillis() + baseMillis;
+        }
+
+        public void cancel() {
+            cancelled = true;
+            tasks.remove(this);
+        }
+
+        private void touch() {
+            lastActivity = System.currentTimeMillis();
+            nextDue = Math.min(nextDue, lastActivity + baseMillis); // don't sit out a long idle interval
+        }
+
+        private long interval(long now) {
+            long interval = focused ? baseMillis : baseMillis * UNFOCUSED_FACTOR;
+            long idleSteps = Math.min(16, (now - lastActivity) / IDLE_STEP_MILLIS);
+            return Math.min(MAX_INTERVAL_MILLIS, interval << idleSteps);
+        }
+    }
+
+    private static final List<Task> tasks = new CopyOnWriteArrayList<>();
+    private static ScheduledExecutorService scheduler;
+
+    /**
+     * Checks for changes roughly every {@code baseMillis} while the stage is open; {@code onEvents}
+     * runs on the FX thread with the new events, and only when there are some.
+     */
+    public static Task schedule(Stage stage, long baseMillis, Consumer<List<ChatEvents.Event>> onEvents) {
+        return register(stage, new Task(baseMillis, onEvents, null, null));
+    }
+
+    /**
+     * Refreshes a private conversation while the stage is open; {@code onChanges} runs on the FX thread
+     * with the rows that are new or changed. The sync is looked up on every tick, since reloading the
+     * conversation replaces it.
+     */
+    public static Task watchConversation(Stage stage, long baseMillis, Supplier<PrivateChatSync> conversation,
+                                         Consumer<List<PrivateChatSync.PrivateMessage>> onChanges) {
+        return register(stage, new Task(baseMillis, null, conversation, onChanges));
+    }
+
+    /**
+     * Reads the change log once right away, even while the chat server is connected. Called after
+     * a reconnect: whatever was pushed while the socket was down is lost, and the connected client
+     * has stopped polling again.
+     */
+    public static synchronized void catchUp() {
+        if (scheduler == null) return; // no window registered yet, so nothing to bring up to date
+        scheduler.execute(RefreshScheduler::pollSafely);
+    }
+
+    public static synchronized void shutdown() {
+        tasks.clear();
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    private static Task register(Stage stage, Task task) {
+        // FX thread: track focus and input so the interval can adapt
+        EventHandler<InputEvent> activity = event -> task.touch();
+        stage.addEventFilter(InputEvent.ANY, activity);
+        stage.focusedProperty().addListener((obs, wasFocused, isFocused) -> {
+            task.focused = isFocused;
+            if (isFocused) task.touch();
+        });
+        task.focused = stage.isFocused();
+        stage.addEventHandler(WindowEvent.WINDOW_HIDDEN, event -> {
+            task.cancel();
+            stage.removeEventFilter(InputEvent.ANY, activity);
+        });
+
+        tasks.add(task);
+        ensureStarted();
+        return task;
+    }
+
+    private static synchronized void ensureStarted() {
+        if (scheduler != null) return;
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "refresh-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.execute(RefreshScheduler::markLogStart); // changes before the first window loaded are already on screen
+        scheduler.scheduleWithFixedDelay(RefreshScheduler::tickSafely, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private static void markLogStart() {
+        try {
+            ChatEvents.poll();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static void tickSafely() {
+        try {
+            tick();
+        } catch (RuntimeException e) {
+            e.printStackTrace(); // keep the scheduler alive
+        }
+    }
+
+    private static void pollSafely() {
+        try {
+            poll();
+        } catch (RuntimeException e) {
+            e.printStackTrace(); // keep the scheduler alive
+        }
+    }
+
+    private static void tick() {
+        if (ChatPushClient.isConnected()) return; // pushes are live; polling is only a fallback
+
+        long now = System.currentTimeMillis();
+        boolean due = false;
+        for (Task task : tasks) {
+            if (task.cancelled || task.nextDue > now) continue;
+            task.nextDue = now + task.interval(now);
+            due = true;
+        }
+        if (due) poll();
+    }
+
+    // Reads the change log once and hands the new events to every task
+    private static void poll() {
+        try {
+            List<ChatEvents.Event> events = ChatEvents.poll(); // one indexed id > ? probe
+            if (events.isEmpty()) return;
+
+            List<Task> touched = new ArrayList<>();
+            List<PrivateChatSync> syncs = new ArrayList<>();
+            for (Task task : tasks) {
+                if (task.cancelled) continue;
+
+                if (task.onEvents != null) {
+                    Platform.runLater(() -> task.onEvents.accept(events));
+                } else {
+                    PrivateChatSync sync = task.conversation.get();
+                    if (sync != null && events.stream().anyMatch(sync::isAffectedBy)) {
+                        touched.add(task);
+                        syncs.add(sync);
+                    }
+                }
+            }
+
+            if (syncs.isEmpty()) return;
+            Map<PrivateChatSync, List<PrivateChatSync.PrivateMessage>> changes = PrivateChatSync.fetchChanges(syncs);
+            for (int i = 0; i < syncs.size(); i++) {
+                Task task = touched.get(i);
+                List<PrivateChatSync.PrivateMessage> rows = changes.get(syncs.get(i));
+                if (!rows.isEmpty() && !task.cancelled) {
+                    Platform.runLater(() -> task.onChanges.accept(rows));
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.chatapp.yahoochatapp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Applies the versioned SQL scripts under {@code db/migration} that have not run against this
+ * database yet, and records each one in {@code schema_version}.
+ *
+ * Both the client and the chat server call {@link #migrate()} on startup; a MySQL named lock
+ * keeps two processes from applying the same version at once.
+ *
+ * MySQL commits every DDL statement on its own, so a script that fails halfway cannot be rolled
+ * back. Each statement is therefore recorded in {@code schema_migration_step} once it succeeds,
+ * and the next start resumes the script at the statement that failed.
+ */
+public class SchemaMigrator {
+
+    private static final String MIGRATION_PATH = "/com/chatapp/yahoochatapp/db/migration/";
+
+    // Applied in this order; add new scripts at the end. One change per ALTER TABLE statement: an
+    // "already present" error skips the whole statement, which must not take other changes with it.
+    private static final List<String> MIGRATIONS = List.of(
+            "V1__private_message_change_tracking.sql",
+            "V2__push_sessions.sql",
+            "V3__hot_query_indexes.sql",
+            "V4__public_message_counters.sql",
+            "V5__friends_unique_pair.sql",
+            "V6__chat_events.sql",
+            "V7__conversation_read_cursor.sql",
+            "V8__conversation_summary.sql",
+            "V9__message_versions.sql",
+            "V10__integer_user_ids.sql",
+            "V11__client_message_ids.sql",
+            "V12__client_nodes.sql",
+            "V13__unique_likes.sql"
+    );
+
+    private static final Pattern FILE_NAME = Pattern.compile("V(\\d+)__(.+)\\.sql");
+    private static final String LOCK_NAME = "chatapp.schema_migration";
+    private static final int LOCK_TIMEOUT_SECONDS = 60;
+
+    // MySQL errors for DDL that already took effect (e.g. a script applied by hand before this table existed)
+    private static final int ER_DUP_FIELDNAME = 1060;
+    private static final int ER_DUP_KEYNAME = 1061;
+    private static final int ER_CANT_DROP_FIELD_OR_KEY = 1091;
+
+    public static void migrate() throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            acquireLock(conn);
+            try {
+                createVersionTable(conn);
+                Set<Integer> applied = appliedVersions(conn);
+
+                for (String fileName : MIGRATIONS) {
+                    Matcher matcher = FILE_NAME.matcher(fileName);
+                    if (!matcher.matches()) {
+                        throw new IllegalStateException("Bad migration file name: " + fileName);
+                    }
+
+                    int version = Integer.parseInt(matcher.group(1));
+                    if (applied.contains(version)) continue;
+
+                    String description = matcher.group(2).replace('_', ' ');
+                    System.out.println("Applying schema migration V" + version + ": " + description);
+                    apply(conn, version, fileName);
+                    recordVersion(conn, version, description);
+                }
+            } finally {
+                releaseLock(conn);
+            }
+        }
+    }
+
+    private static void apply(Connection conn, int version, String fileName) throws SQLException {
+        Set<Integer> done = completedSteps(conn, version);
+        if (!done.isEmpty()) {
+            System.out.println("  resuming after " + done.size() + " statements applied by an earlier attempt");
+        }
+
+        List<String> statements = readStatements(fileName);
+        try (Statement stmt = conn.createStatement()) {
+            for (int step = 0; step < statements.size(); step++) {
+                if (done.contains(step)) continue;
+
+                String sql = statements.get(step);
+                try {
+                    stmt.execute(sql);
+                } catch (SQLException e) {
+                    if (!isAlreadyApplied(e)) {
+                        throw e;
+                    }
+                    System.out.println("  already present, skipping: " + e.getMessage());
+                }
+                recordStep(conn, version, step);
+            }
+        }
+    }
+
+    private static boolean isAlreadyApplied(SQLException e) {
+        int code = e.getErrorCode();
+        return code == ER_DUP_FIELDNAME || code == ER_DUP_KEYNAME || code == ER_CANT_DROP_FIELD_OR_KEY;
+    }
+
+    /**
+     * Splits a script into statements on trailing semicolons, dropping {@code --} comment lines.
+     */
+    static List<String> readStatements(String fileName) {
+        String script;
+        try (InputStream in = SchemaMigrator.class.getResourceAsStream(MIGRATION_PATH + fileName)) {
+            if (in == null) {
+                throw new IllegalStateException("Missing migration script: " + fileName);
+            }
+            script = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read migration script: " + fileName, e);
+        }
+
+        List<String> statements = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        for (String line : script.split("\\R")) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("--")) continue;
+
+            current.append(line).append('\n');
+            if (trimmed.endsWith(";")) {
+                String sql = current.toString().trim();
+                statements.add(sql.substring(0, sql.length() - 1));
+                current.setLength(0);
+            }
+        }
+        if (!current.toString().isBlank()) {
+            statements.add(current.toString().trim());
+        }
+        return statements;
+    }
+
+    private static void createVersionTable(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS schema_version (" +
+                    "version INT PRIMARY KEY, " +
+                    "description VARCHAR(200) NOT NULL, " +
+                    "applied_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP)");
+            stmt.execute("CREATE TABLE IF NOT EXISTS schema_migration_step (" +
+                    "version INT NOT NULL, " +
+                    "step INT NOT NULL, " +
+                    "PRIMARY KEY (version, step))");
+        }
+    }
+
+    private static Set<Integer> completedSteps(Connection conn, int version) throws SQLException {
+        Set<Integer> steps = new HashSet<>();
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT step FROM schema_migration_step WHERE version = ?")) {
+            pstmt.setInt(1, version);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    steps.add(rs.getInt("step"));
+                }
+            }
+        }
+        return steps;
+    }
+
+    private static void recordStep(Connection conn, int version, int step) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("INSERT INTO schema_migration_step (version, step) VALUES (?, ?)")) {
+            pstmt.setInt(1, version);
+            pstmt.setInt(2, step);
+            pstmt.executeUpdate();
+        }
+    }
+
+    private static Set<Integer> appliedVersions(Connection conn) throws SQLException {
+        Set<Integer> versions = new HashSet<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT version FROM schema_version")) {
+            while (rs.next()) {
+                versions.add(rs.getInt("version"));
+            }
+        }
+        return versions;
+    }
+
+    private static void recordVersion(Connection conn, int version, String description) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("INSERT INTO schema_version (version, description) VALUES (?, ?)")) {
+            pstmt.setInt(1, version);
+            pstmt.setString(2, description);
+            pstmt.executeUpdate();
+        }
+        try (PreparedStatement pstmt = conn.prepareStatement("DELETE FROM schema_migration_step WHERE version = ?")) {
+            pstmt.setInt(1, version);
+            pstmt.executeUpdate(); // the whole script is done
+        }
+    }
+
+    private static void acquireLock(Connection conn) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+            pstmt.setString(1, LOCK_NAME);
+            pstmt.setInt(2, LOCK_TIMEOUT_SECONDS);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next() || rs.getInt(1) != 1) {
+                    throw new SQLException("Timed out waiting for the schema migration lock");
+                }
+            }
+        }
+    }
+
+    private static void releaseLock(Connection conn) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            pstmt.setString(1, LOCK_NAME);
+            pstmt.executeQuery().close();
+        }
+    }
+}
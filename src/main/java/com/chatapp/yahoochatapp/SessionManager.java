@@ -4,6 +4,7 @@ public class SessionManager {
 
     private static String currentUser = null;
     private static String profilePicturePath = null;
+    private static String pushToken = null;
 
     public static void setUser(String username) {
         currentUser = username;
@@ -15,6 +16,7 @@ public class SessionManager {
 
     public static void clearSession() {
         currentUser = null;
+        pushToken = null;
     }
 
     // Check if session is active
@@ -27,6 +29,15 @@ public class SessionManager {
         profilePicturePath = path;
     }
 
+    // Token that authenticates the push connection (issued at login)
+    public static void setPushToken(String token) {
+        pushToken = token;
+    }
+
+    public static String getPushToken() {
+        return pushToken;
+    }
+
     // Retrieve profile picture
     public static String getProfilePicture() {
         return profilePicturePath;
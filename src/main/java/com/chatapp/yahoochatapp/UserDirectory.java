@@ -0,0 +1,166 @@
+package com.chatapp.yahoochatapp;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-process cache of user id ↔ username. Every table stores integer user ids; the repositories
+ * turn the names they are called with into ids before binding, and the ids they read back into
+ * names, through this class.
+ *
+ * Misses are loaded with one query per batch. Entries expire after
+ * {@code chatapp.users.cacheTtlMs} (5 minutes by default), so a rename made by another process
+ * shows up without a restart; renames made by this process update the cache right away.
+ */
+public class UserDirectory {
+
+    private static final long TTL_MILLIS = Math.max(0, Long.getLong("chatapp.users.cacheTtlMs", 300_000));
+    private static final int CHUNK_SIZE = 500;
+
+    private record Entry(int id, String name, long loadedAt) {
+        boolean isFresh(long now) {
+            return now - loadedAt < TTL_MILLIS;
+        }
+    }
+
+    private static final Map<String, Entry> byName = new ConcurrentHashMap<>();
+    private static final Map<Integer, Entry> byId = new ConcurrentHashMap<>();
+
+    /**
+     * The user's id, or 0 if there is no such user; 0 matches no row, so queries for an unknown
+     * name simply find nothing.
+     */
+    public static int idOf(Connection conn, String name) throws SQLException {
+        if (name == null) return 0;
+
+        Entry entry = byName.get(name);
+        if (entry != null && entry.isFresh(System.currentTimeMillis())) return entry.id();
+
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT id, username FROM users WHERE username = ?")) {
+            pstmt.setString(1, name);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return remember(rs.getInt("id"), rs.getString("username")).id();
+                }
+            }
+        }
+        byName.remove(name);
+        return 0;
+    }
+
+    /**
+     * The user's id for a write: an unknown name fails the statement instead of storing id 0.
+     */
+    public static int requireIdOf(Connection conn, String name) throws SQLException {
+        int id = idOf(conn, name);
+        if (id == 0) {
+            throw new SQLException("Unknown user: " + name);
+        }
+        return id;
+    }
+
+    /**
+     * Ids for several names, in order; unknown names map to 0.
+     */
+    public static List<Integer> idsOf(Connection conn, List<String> names) throws SQLException {
+        long now = System.currentTimeMillis();
+        List<String> missing = new ArrayList<>();
+        for (String name : new LinkedHashSet<>(names)) {
+            if (name == null) continue;
+            Entry entry = byName.get(name);
+            if (entry == null || !entry.isFresh(now)) {
+                byName.remove(name); // comes back only if the name still exists
+                missing.add(name);
+            }
+        }
+        for (int from = 0; from < missing.size(); from += CHUNK_SIZE) {
+            load(conn, "username", missing.subList(from, Math.min(from + CHUNK_SIZE, missing.size())));
+        }
+
+        List<Integer> ids = new ArrayList<>(names.size());
+        for (String name : names) {
+            Entry entry = name == null ? null : byName.get(name);
+            ids.add(entry == null ? 0 : entry.id());
+        }
+        return ids;
+    }
+
+    /**
+     * The username for an id, or {@code null} if the user does not exist (or the id is SQL NULL, read as 0).
+     */
+    public static String nameOf(Connection conn, int id) throws SQLException {
+        if (id <= 0) return null;
+        return namesOf(conn, List.of(id)).get(id);
+    }
+
+    /**
+     * Usernames for several ids; ids without a user are left out of the map.
+     */
+    public static Map<Integer, String> namesOf(Connection conn, Collection<Integer> ids) throws SQLException {
+        long now = System.currentTimeMillis();
+        List<Integer> missing = new ArrayList<>();
+        for (Integer id : new LinkedHashSet<>(ids)) {
+            if (id == null || id <= 0) continue;
+            Entry entry = byId.get(id);
+            if (entry == null || !entry.isFresh(now)) {
+                byId.remove(id);
+                missing.add(id);
+            }
+        }
+        for (int from = 0; from < missing.size(); from += CHUNK_SIZE) {
+            load(conn, "id", missing.subList(from, Math.min(from + CHUNK_SIZE, missing.size())));
+        }
+
+        Map<Integer, String> names = new HashMap<>();
+        for (Integer id : ids) {
+            Entry entry = id == null ? null : byId.get(id);
+            if (entry != null) names.put(id, entry.name());
+        }
+        return names;
+    }
+
+    /**
+     * Records a rename made by this process, so the old name stops resolving immediately.
+     */
+    public static void renamed(String oldName, String newName) {
+        Entry old = byName.remove(oldName);
+        if (old != null) {
+            remember(old.id(), newName);
+        }
+    }
+
+    private static Entry remember(int id, String name) {
+        Entry entry = new Entry(id, name, System.currentTimeMillis());
+        Entry previous = byId.put(id, entry);
+        if (previous != null && !previous.name().equals(name)) {
+            byName.remove(previous.name(), previous); // renamed since it was cached
+        }
+        byName.put(name, entry);
+        return entry;
+    }
+
+    // column is "id" or "username", never user input
+    private static void load(Connection conn, String column, List<?> keys) throws SQLException {
+        String query = "SELECT id, username FROM users WHERE " + column + " IN (" + InteractionSnapshot.placeholders(keys.size()) + ")";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(query)) {
+            for (int i = 0; i < keys.size(); i++) {
+                pstmt.setObject(i + 1, keys.get(i));
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    remember(rs.getInt("id"), rs.getString("username"));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.chatapp.yahoochatapp;
+
+import org.mindrot.jbcrypt.BCrypt;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Account and profile queries. Every method runs off the JavaFX thread (see {@link DataAccess}).
+ */
+public class UserRepository {
+
+    /**
+     * Result of a login attempt: {@code profilePicture} and {@code pushToken} (see
+     * {@link PushSessions}) are only meaningful when {@code success}.
+     */
+    public record LoginResult(boolean success, String profilePicture, String pushToken) {
+    }
+
+    // The bcrypt check is deliberately slow, so it runs on the background executor too
+    public static CompletableFuture<LoginResult> validateLogin(String username, String password) {
+        return DataAccess.supply(() -> {
+            String query = "SELECT password, profile_picture FROM users WHERE username = ?";
+
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(query)) {
+
+                pstmt.setString(1, username);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (rs.next() && BCrypt.checkpw(password, rs.getString("password"))) {
+                        return new LoginResult(true, rs.getString("profile_picture"), PushSessions.issue(conn, username));
+                    }
+                }
+            }
+            return new LoginResult(false, null, null);
+        });
+    }
+
+    /**
+     * Ends the push session of a logout, so its token cannot be replayed.
+     */
+    public static CompletableFuture<Void> revokePushToken(String token) {
+        return DataAccess.run(() -> {
+            try (Connection conn = DatabaseConnection.getConnection()) {
+                PushSessions.revoke(conn, token);
+            }
+        });
+    }
+
+    public static CompletableFuture<Boolean> isUsernameTaken(String username) {
+        return DataAccess.supply(() -> {
+            String query = "SELECT username FROM users WHERE username = ?";
+
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(query)) {
+
+                pstmt.setString(1, username);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    return rs.next(); // If there is a result, the username is already taken
+                }
+            }
+        });
+    }
+
+    public static CompletableFuture<Boolean> registerUser(String username, String plainPassword) {
+        return DataAccess.supply(() -> {
+            String query = "INSERT INTO users (username, password) VALUES (?, ?)";
+
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(query)) {
+
+                pstmt.setString(1, username);
+                pstmt.setString(2, hashPassword(plainPassword));
+                return pstmt.executeUpdate() > 0;
+            }
+        });
+    }
+
+    public static CompletableFuture<String> getProfilePicture(String username) {
+        return DataAccess.supply(() -> {
+            String query = "SELECT profile_picture FROM users WHERE username = ?";
+
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(query)) {
+
+                pstmt.setString(1, username);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    return rs.next() ? rs.getString("profile_picture") : null;
+                }
+            }
+        });
+    }
+
+    public static CompletableFuture<Boolean> updateProfilePicture(String username, String imagePath) {
+        return DataAccess.supply(() -> {
+            String query = "UPDATE users SET profile_picture = ? WHERE username = ?";
+
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(query)) {
+
+                pstmt.setString(1, imagePath);
+                pstmt.setString(2, username);
+                return pstmt.executeUpdate() > 0;
+            }
+        });
+    }
+
+    /**
+     * Changes the username and/or password; empty values are left unchanged.
+     */
+    public static CompletableFuture<Boolean> updateUserProfile(String username, String newUsername, String newPassword) {
+        return DataAccess.supply(() -> {
+            boolean usernameChanged = !newUsername.isEmpty();
+            boolean passwordChanged = !newPassword.isEmpty();
+
+            // If neither username nor password is changed, return false
+            if (!usernameChanged && !passwordChanged) {
+                return false;
+            }
+
+            StringBuilder query = new StringBuilder("UPDATE users SET ");
+            boolean needComma = false;
+
+            if (usernameChanged) {
+                query.append("username = ?");
+                needComma = true;
+            }
+
+            if (passwordChanged) {
+                if (needComma) query.append(", ");
+                query.append("password = ?");
+            }
+
+            query.append(" WHERE username = ?");
+
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(query.toString())) {
+
+                int index = 1;
+                if (usernameChanged) {
+                    pstmt.setString(index++, newUsername);
+                }
+                if (passwordChanged) {
+                    pstmt.setString(index++, hashPassword(newPassword));
+                }
+                pstmt.setString(index, username); // Where clause
+
+                boolean updated = pstmt.executeUpdate() > 0;
+                if (updated && usernameChanged) {
+                    UserDirectory.renamed(username, newUsername); // history is keyed by id, so it follows the rename
+                }
+                return updated;
+            }
+        });
+    }
+
+    private static String hashPassword(String plainPassword) {
+        return BCrypt.hashpw(plainPassword, BCrypt.gensalt(12)); // Hash the password with salt
+    }
+}
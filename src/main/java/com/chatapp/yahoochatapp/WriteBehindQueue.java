@@ -0,0 +1,283 @@
+package com.chatapp.yahoochatapp;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces single-row INSERTs into JDBC batches.
+ *
+ * {@link #submit} queues a row and returns right away. A writer thread waits up to the linger
+ * time for more rows to arrive, then writes up to the max batch size in one transaction. Each
+ * row's future completes with its generated id once that transaction has committed. If the batch
+ * fails, its rows are written again one at a time, so a single bad row (e.g. an unknown user)
+ * fails on its own instead of taking the rest of the batch with it.
+ *
+ * Batch size and linger come from {@code chatapp.send.maxBatchSize} and {@code chatapp.send.lingerMs}.
+ */
+public class WriteBehindQueue<T> {
+
+    /**
+     * Binds one row; {@code conn} is the batch's connection, for lookups the row needs (e.g. user ids).
+     */
+    @FunctionalInterface
+    public interface RowBinder<T> {
+        void bind(Connection conn, PreparedStatement pstmt, T row) throws SQLException;
+    }
+
+    /**
+     * Extra writes for a batch (e.g. change log rows), run in the batch's transaction before it commits.
+     */
+    @FunctionalInterface
+    public interface AfterInsert<T> {
+        void afterInsert(Connection conn, List<T> rows, List<Integer> ids) throws SQLException;
+    }
+
+    /**
+     * Finds the rows of a batch that an earlier attempt already committed (e.g. when the reply to
+     * the commit was lost); returns their ids by position and {@code null} for rows still to insert.
+     */
+    @FunctionalInterface
+    public interface StoredLookup<T> {
+        List<Integer> find(Connection conn, List<T> rows) throws SQLException;
+    }
+
+    private static final int MAX_BATCH_SIZE = Math.max(1, Integer.getInteger("chatapp.send.maxBatchSize", 100));
+    private static final long LINGER_MILLIS = Math.max(0, Long.getLong("chatapp.send.lingerMs", 5));
+    private static final int MAX_RETRIES = Math.max(0, Integer.getInteger("chatapp.send.retries", 2));
+    private static final long RETRY_BACKOFF_MILLIS = 250;
+
+    // How often an idle writer wakes up to check for shutdown
+    private static final long IDLE_POLL_MILLIS = 250;
+
+    private static final List<WriteBehindQueue<?>> INSTANCES = new CopyOnWriteArrayList<>();
+
+    private record Pending<T>(T row, CompletableFuture<Integer> result) {
+    }
+
+    // The commit itself failed, so the rows may or may not be stored
+    private static final class CommitFailedException extends SQLException {
+        private CommitFailedException(SQLException cause) {
+            super("Commit failed: " + cause.getMessage(), cause.getSQLState(), cause.getErrorCode(), cause);
+        }
+    }
+
+    private final String insertSql;
+    private final RowBinder<T> binder;
+    private final AfterInsert<T> afterInsert;
+    private final StoredLookup<T> storedLookup;
+    private final LinkedBlockingQueue<Pending<T>> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    public WriteBehindQueue(String name, String insertSql, RowBinder<T> binder) {
+        this(name, insertSql, binder, null);
+    }
+
+    public WriteBehindQueue(String name, String insertSql, RowBinder<T> binder, AfterInsert<T> afterInsert) {
+        this(name, insertSql, binder, afterInsert, null);
+    }
+
+    /**
+     * With a {@code storedLookup}, rows carry an idempotency key: a failed batch is written again
+     * (up to {@code chatapp.send.retries} times), and rows that turn out to be stored already are
+     * not inserted twice.
+     */
+    public WriteBehindQueue(String name, String insertSql, RowBinder<T> binder, AfterInsert<T> afterInsert,
+                            StoredLookup<T> storedLookup) {
+        this.insertSql = insertSql;
+        this.binder = binder;
+        this.afterInsert = afterInsert;
+        this.storedLookup = storedLookup;
+
+        this.writer = new Thread(this::writeLoop, name);
+        writer.setDaemon(true);
+        writer.start();
+        INSTANCES.add(this);
+    }
+
+    /**
+     * Queues a row; the future completes with its generated id once the row is committed.
+     */
+    public CompletableFuture<Integer> submit(T row) {
+        CompletableFuture<Integer> result = new CompletableFuture<>();
+        if (!running) {
+            result.completeExceptionally(new IllegalStateException("Write-behind queue is shut down"));
+            return result;
+        }
+        queue.add(new Pending<>(row, result));
+        return result;
+    }
+
+    private void writeLoop() {
+        List<Pending<T>> batch = new ArrayList<>(MAX_BATCH_SIZE);
+
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending<T> first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+
+                // Give a burst a moment to fill the batch
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(LINGER_MILLIS);
+                while (batch.size() < MAX_BATCH_SIZE) {
+                    long remaining = deadline - System.nanoTime();
+                    Pending<T> next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) break;
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                queue.drainTo(batch);
+                running = false;
+            }
+
+            if (!batch.isEmpty()) {
+                writeBatch(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void writeBatch(List<Pending<T>> batch) {
+        int attempts = storedLookup == null ? 1 : 1 + MAX_RETRIES; // only idempotent rows are safe to write again
+        for (int attempt = 1; ; attempt++) {
+            try {
+                List<Integer> ids = tryWrite(batch);
+                for (int i = 0; i < batch.size(); i++) {
+                    Integer id = ids.get(i);
+                    batch.get(i).result().complete(id == null ? -1 : id);
+                }
+                return;
+            } catch (SQLException | RuntimeException e) {
+                e.printStackTrace();
+                if (attempt < attempts && sleepBeforeRetry(attempt)) {
+                    System.out.println("Retrying batch of " + batch.size() + " row(s), attempt " + (attempt + 1));
+                    continue;
+                }
+                if (batch.size() > 1 && canWriteSeparately(e)) {
+                    System.out.println("Batch of " + batch.size() + " row(s) failed, writing them one at a time");
+                    batch.forEach(this::writeAlone);
+                    return;
+                }
+                for (Pending<T> pending : batch) {
+                    pending.result().completeExceptionally(e);
+                }
+                return;
+            }
+        }
+    }
+
+    private void writeAlone(Pending<T> pending) {
+        try {
+            Integer id = tryWrite(List.of(pending)).get(0);
+            pending.result().complete(id == null ? -1 : id);
+        } catch (SQLException | RuntimeException e) {
+            e.printStackTrace();
+            pending.result().completeExceptionally(e);
+        }
+    }
+
+    // Not when the database is unreachable (every row would fail again), nor when a failed commit
+    // may have stored rows that have no idempotency key to find them by
+    private boolean canWriteSeparately(Exception e) {
+        if (e instanceof SQLException sqlException) {
+            String state = sqlException.getSQLState();
+            if (state != null && state.startsWith("08")) return false; // connection exception class
+        }
+        return storedLookup != null || !(e instanceof CommitFailedException);
+    }
+
+    // Ids by position in the batch, for rows inserted now and rows an earlier attempt had already stored
+    private List<Integer> tryWrite(List<Pending<T>> batch) throws SQLException {
+        List<T> rows = batch.stream().map(Pending::row).toList();
+
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+
+            try {
+                List<Integer> ids = new ArrayList<>(storedLookup == null
+                        ? Collections.nCopies(rows.size(), null)
+                        : storedLookup.find(conn, rows));
+                List<Integer> fresh = new ArrayList<>(); // positions still to insert
+                for (int i = 0; i < rows.size(); i++) {
+                    if (ids.get(i) == null) fresh.add(i);
+                }
+
+                if (!fresh.isEmpty()) {
+                    List<T> freshRows = fresh.stream().map(rows::get).toList();
+                    List<Integer> freshIds = new ArrayList<>(freshRows.size());
+                    try (PreparedStatement pstmt = conn.prepareStatement(insertSql, Statement.RETURN_GENERATED_KEYS)) {
+                        for (T row : freshRows) {
+                            binder.bind(conn, pstmt, row);
+                            pstmt.addBatch();
+                        }
+                        pstmt.executeBatch();
+
+                        // Keys come back in the order the rows were added
+                        try (ResultSet keys = pstmt.getGeneratedKeys()) {
+                            while (keys.next()) {
+                                freshIds.add(keys.getInt(1));
+                            }
+                        }
+                    }
+                    if (afterInsert != null) {
+                        afterInsert.afterInsert(conn, freshRows, freshIds); // rows stored by an earlier attempt already had theirs
+                    }
+                    for (int i = 0; i < fresh.size() && i < freshIds.size(); i++) {
+                        ids.set(fresh.get(i), freshIds.get(i));
+                    }
+                }
+                try {
+                    conn.commit();
+                } catch (SQLException e) {
+                    throw new CommitFailedException(e);
+                }
+                return ids;
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    private static boolean sleepBeforeRetry(int attempt) {
+        try {
+            Thread.sleep(RETRY_BACKOFF_MILLIS * attempt);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Stops accepting rows and waits for the ones already queued to be written.
+     */
+    public void shutdown() {
+        running = false;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public static void shutdownAll() {
+        for (WriteBehindQueue<?> queue : INSTANCES) {
+            queue.shutdown();
+        }
+    }
+}
@@ -0,0 +1,375 @@
+package com.chatapp.yahoochatapp.server;
+
+import com.chatapp.yahoochatapp.ChatEvents;
+import com.chatapp.yahoochatapp.ChatFrame;
+import com.chatapp.yahoochatapp.DatabaseConnection;
+import com.chatapp.yahoochatapp.InteractionCounterReconciler;
+import com.chatapp.yahoochatapp.PushSessions;
+import com.chatapp.yahoochatapp.SchemaMigrator;
+import com.chatapp.yahoochatapp.UserDirectory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Standalone push server. Clients keep one socket open and get new public messages, private
+ * messages, read receipts and friend changes pushed to them instead of polling MySQL.
+ *
+ * A socket is only subscribed once its HELLO frame presents a push token issued at login (see
+ * {@link PushSessions}); the user is the token's owner, never a name the client claims.
+ * Clients announce a change by id after writing it; the server reads the stored row (same
+ * schema, same {@link DatabaseConnection} settings) and fans it out to the users it concerns.
+ * All socket I/O happens on one selector thread; database lookups run on virtual threads and
+ * hand their results back to the selector through a task queue.
+ *
+ * Run with {@code mvn javafx:run@server} or by launching this class directly.
+ */
+public class ChatServer {
+
+    private static final int MAX_FRAME_BYTES = 256 * 1024;
+
+    private final int port;
+    private final Selector selector;
+    private final Map<String, Set<Session>> sessionsByUser = new HashMap<>();
+    private final Set<Session> sessions = new HashSet<>();
+    private final Queue<Runnable> selectorTasks = new ConcurrentLinkedQueue<>();
+    private final ExecutorService lookups = Executors.newVirtualThreadPerTaskExecutor();
+
+    public ChatServer(int port) throws IOException {
+        this.port = port;
+        this.selector = Selector.open();
+    }
+
+    public static void main(String[] args) throws IOException, SQLException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : Integer.getInteger("chatapp.server.port", 5555);
+        SchemaMigrator.migrate(); // the server reads columns added by the migrations too; a failure stops it
+        InteractionCounterReconciler.start(); // one process repairs like/comment counter drift
+        ChatEvents.startPruning(); // and trims the change log
+        new ChatServer(port).run();
+    }
+
+    public void run() throws IOException {
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress(port));
+            server.configureBlocking(false);
+            server.register(selector, SelectionKey.OP_ACCEPT);
+            System.out.println("✅ Chat server listening on port " + port);
+
+            while (selector.isOpen()) {
+                selector.select();
+
+                Runnable task;
+                while ((task = selectorTasks.poll()) != null) {
+                    task.run();
+                }
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+
+                    try {
+                        if (!key.isValid()) continue;
+                        if (key.isAcceptable()) accept(server);
+                        if (key.isValid() && key.isReadable()) read((Session) key.attachment());
+                        if (key.isValid() && key.isWritable()) write((Session) key.attachment());
+                    } catch (IOException e) {
+                        close((Session) key.attachment());
+                    }
+                }
+            }
+        } finally {
+            lookups.shutdownNow();
+            DatabaseConnection.shutdown();
+        }
+    }
+
+    private void accept(ServerSocketChannel server) throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null) return;
+
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        Session session = new Session(channel);
+        session.key = channel.register(selector, SelectionKey.OP_READ, session);
+        sessions.add(session);
+    }
+
+    private void read(Session session) throws IOException {
+        int read = session.channel.read(session.readBuffer);
+        if (read < 0) {
+            close(session);
+            return;
+        }
+
+        session.readBuffer.flip();
+        while (session.readBuffer.hasRemaining()) {
+            byte b = session.readBuffer.get();
+            if (b == '\n') {
+                String line = session.pendingLine.toString(StandardCharsets.UTF_8);
+                session.pendingLine.reset();
+                if (!line.isBlank()) {
+                    handle(session, line);
+                }
+            } else {
+                session.pendingLine.write(b);
+                if (session.pendingLine.size() > MAX_FRAME_BYTES) {
+                    System.err.println("Dropping client sending oversized frame: " + session.user);
+                    close(session);
+                    return;
+                }
+            }
+        }
+        session.readBuffer.clear();
+    }
+
+    private void write(Session session) throws IOException {
+        while (!session.writeQueue.isEmpty()) {
+            ByteBuffer buffer = session.writeQueue.peek();
+            session.channel.write(buffer);
+            if (buffer.hasRemaining()) {
+                return; // socket buffer full, wait for the next OP_WRITE
+            }
+            session.writeQueue.poll();
+        }
+        if (session.closeAfterWrite) {
+            close(session);
+            return;
+        }
+        session.key.interestOps(SelectionKey.OP_READ);
+    }
+
+    private void send(Session session, ChatFrame frame) {
+        if (!session.key.isValid()) return;
+
+        session.writeQueue.add(ByteBuffer.wrap(frame.encode().getBytes(StandardCharsets.UTF_8)));
+        session.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+    }
+
+    private void sendTo(Collection<String> users, ChatFrame frame) {
+        for (String user : new HashSet<>(users)) {
+            for (Session session : sessionsByUser.getOrDefault(user, Set.of())) {
+                send(session, frame);
+            }
+        }
+    }
+
+    private void broadcast(ChatFrame frame) {
+        for (Session session : sessions) {
+            if (session.user != null) {
+                send(session, frame);
+            }
+        }
+    }
+
+    private void close(Session session) {
+        if (session == null) return;
+
+        sessions.remove(session);
+        if (session.user != null) {
+            Set<Session> userSessions = sessionsByUser.get(session.user);
+            if (userSessions != null) {
+                userSessions.remove(session);
+                if (userSessions.isEmpty()) sessionsByUser.remove(session.user);
+            }
+        }
+        session.key.cancel();
+        try {
+            session.channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private void handle(Session session, String line) {
+        ChatFrame frame;
+        try {
+            frame = ChatFrame.decode(line);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Ignoring malformed frame from " + session.user);
+            return;
+        }
+
+        if (ChatFrame.HELLO.equals(frame.type())) {
+            if (session.user == null && !frame.fields().isEmpty()) {
+                lookup(() -> authenticate(session, frame.field(0)));
+            }
+            return;
+        }
+        if (session.user == null) {
+            return; // everything else requires an authenticated HELLO first
+        }
+
+        String user = session.user;
+        try {
+            switch (frame.type()) {
+                case ChatFrame.PING -> send(session, ChatFrame.of(ChatFrame.PONG));
+                case ChatFrame.READ_RECEIPT -> sendTo(List.of(frame.field(0)), ChatFrame.of(ChatFrame.READ_RECEIPT, user, frame.field(0)));
+                case ChatFrame.PUBLIC_MESSAGE -> lookup(() -> pushPublicMessage(frame.longField(0)));
+                case ChatFrame.PRIVATE_MESSAGE -> lookup(() -> pushPrivateMessage(user, frame.longField(0)));
+                case ChatFrame.FRIEND -> lookup(() -> pushFriendship(user, frame.field(0)));
+                default -> System.err.println("Unknown frame type from " + user + ": " + frame.type());
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Bad frame from " + user + ": " + e.getMessage());
+        }
+    }
+
+    private interface Lookup {
+        Runnable run() throws SQLException;
+    }
+
+    // Runs a database lookup off the selector thread and applies its result back on it
+    private void lookup(Lookup lookup) {
+        lookups.execute(() -> {
+            try {
+                Runnable result = lookup.run();
+                if (result != null) {
+                    selectorTasks.add(result);
+                    selector.wakeup();
+                }
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    private Runnable authenticate(Session session, String token) throws SQLException {
+        String user;
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            user = PushSessions.verify(conn, token);
+        }
+
+        return () -> {
+            if (!sessions.contains(session) || session.user != null) return; // closed or a duplicate HELLO won
+            if (user == null) {
+                System.err.println("Rejecting push session with an unknown or expired token");
+                send(session, ChatFrame.of(ChatFrame.REJECTED));
+                session.closeAfterWrite = true;
+                return;
+            }
+            session.user = user;
+            sessionsByUser.computeIfAbsent(user, u -> new HashSet<>()).add(session);
+            send(session, ChatFrame.of(ChatFrame.WELCOME, user));
+        };
+    }
+
+    private Runnable pushPublicMessage(long messageId) throws SQLException {
+        String query = "SELECT id, sender_id, content, timestamp, version FROM public_messages WHERE id = ?";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(query)) {
+            pstmt.setLong(1, messageId);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next()) {
+                    return () -> broadcast(ChatFrame.of(ChatFrame.PUBLIC_DELETED, messageId));
+                }
+                ChatFrame frame = ChatFrame.of(ChatFrame.PUBLIC_MESSAGE,
+                        rs.getLong("id"),
+                        UserDirectory.nameOf(conn, rs.getInt("sender_id")),
+                        rs.getString("content"),
+                        rs.getTimestamp("timestamp").getTime(),
+                        rs.getInt("version"));
+                return () -> broadcast(frame);
+            }
+        }
+    }
+
+    private Runnable pushPrivateMessage(String publisher, long messageId) throws SQLException {
+        String query = "SELECT id, sender_id, receiver_id, message, deleted, updated_at, version, client_id FROM chat_messages WHERE id = ?";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(query)) {
+            pstmt.setLong(1, messageId);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next()) return null;
+
+                String sender = UserDirectory.nameOf(conn, rs.getInt("sender_id"));
+                String receiver = UserDirectory.nameOf(conn, rs.getInt("receiver_id"));
+                if (!publisher.equals(sender) && !publisher.equals(receiver)) {
+                    return null; // only participants may announce a conversation's rows
+                }
+
+                ChatFrame frame = ChatFrame.of(ChatFrame.PRIVATE_MESSAGE,
+                        rs.getLong("id"),
+                        sender,
+                        receiver,
+                        rs.getString("message"),
+                        rs.getBoolean("deleted") ? 1 : 0,
+                        rs.getTimestamp("updated_at").getTime(),
+                        rs.getInt("version"),
+                        rs.getLong("client_id"));
+                return () -> sendTo(List.of(sender, receiver), frame);
+            }
+        }
+    }
+
+    private Runnable pushFriendship(String publisher, String other) throws SQLException {
+        String query = "SELECT user_id, status FROM friends WHERE (user_id = ? AND friend_id = ?) OR (user_id = ? AND friend_id = ?)";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(query)) {
+            int publisherId = UserDirectory.idOf(conn, publisher);
+            int otherId = UserDirectory.idOf(conn, other);
+            pstmt.setInt(1, publisherId);
+            pstmt.setInt(2, otherId);
+            pstmt.setInt(3, otherId);
+            pstmt.setInt(4, publisherId);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                ChatFrame frame;
+                if (rs.next()) {
+                    boolean sentByPublisher = rs.getInt("user_id") == publisherId;
+                    String status = rs.getInt("status") == 0 ? "Pending" : "Accepted"; // wire format stays textual
+                    frame = sentByPublisher
+                            ? ChatFrame.of(ChatFrame.FRIEND, publisher, other, status)
+                            : ChatFrame.of(ChatFrame.FRIEND, other, publisher, status);
+                } else {
+                    frame = ChatFrame.of(ChatFrame.FRIEND, publisher, other, "Removed");
+                }
+                return () -> sendTo(List.of(publisher, other), frame);
+            }
+        }
+    }
+
+    /**
+     * Per-connection state; only touched on the selector thread.
+     */
+    private static final class Session {
+        private final SocketChannel channel;
+        private final ByteBuffer readBuffer = ByteBuffer.allocate(8192);
+        private final ByteArrayOutputStream pendingLine = new ByteArrayOutputStream();
+        private final Queue<ByteBuffer> writeQueue = new ArrayDeque<>();
+        private SelectionKey key;
+        private String user;
+        private boolean closeAfterWrite;
+
+        private Session(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+-- Surrogate integer user ids instead of usernames in every table, and TINYINT codes instead of
+-- status / type strings. Secondary indexes shrink to a few bytes per user column, lookups and
+-- joins compare integers, and renaming a user only touches users.username.
+--
+-- Codes: friends.status 0 = pending, 1 = accepted; message_interactions.type 1 = like, 2 = comment.
+-- Rows whose username no longer matches a user (e.g. history orphaned by an old rename) keep a
+-- NULL id and drop out of every query. Every user id column references users(id) (last section).
+--
+-- The script cannot run in one transaction (MySQL commits each DDL statement), so SchemaMigrator
+-- records every statement as it succeeds and a failed run resumes where it stopped. The rebuilt
+-- tables are created with IF NOT EXISTS, so a rerun of those steps is harmless too.
+
+-- users: integer id (skipped if the table already has one) and a unique username for logins.
+ALTER TABLE users ADD COLUMN id INT NOT NULL AUTO_INCREMENT UNIQUE FIRST;
+CREATE UNIQUE INDEX uq_users_username ON users (username);
+
+-- friends
+ALTER TABLE friends ADD COLUMN user_id INT NULL;
+ALTER TABLE friends ADD COLUMN friend_id INT NULL;
+ALTER TABLE friends ADD COLUMN status_code TINYINT NOT NULL DEFAULT 0;
+UPDATE friends f JOIN users u ON u.username = f.user SET f.user_id = u.id;
+UPDATE friends f JOIN users u ON u.username = f.friend SET f.friend_id = u.id;
+UPDATE friends SET status_code = IF(status = 'Pending', 0, 1);
+DELETE FROM friends WHERE user_id IS NULL OR friend_id IS NULL;
+DROP INDEX uq_friends_pair ON friends;
+DROP INDEX idx_friends_user_friend_status ON friends;
+DROP INDEX idx_friends_friend_status_user ON friends;
+ALTER TABLE friends DROP COLUMN user;
+ALTER TABLE friends DROP COLUMN friend;
+ALTER TABLE friends DROP COLUMN status;
+ALTER TABLE friends MODIFY user_id INT NOT NULL;
+ALTER TABLE friends MODIFY friend_id INT NOT NULL;
+ALTER TABLE friends CHANGE COLUMN status_code status TINYINT NOT NULL DEFAULT 0;
+CREATE UNIQUE INDEX uq_friends_pair ON friends (user_id, friend_id);
+CREATE INDEX idx_friends_user_friend_status ON friends (user_id, friend_id, status);
+CREATE INDEX idx_friends_friend_status_user ON friends (friend_id, status, user_id);
+
+-- chat_messages: the status column is gone; read state lives in conversation_read_cursor (V7).
+ALTER TABLE chat_messages ADD COLUMN sender_id INT NULL;
+ALTER TABLE chat_messages ADD COLUMN receiver_id INT NULL;
+UPDATE chat_messages m JOIN users u ON u.username = m.sender SET m.sender_id = u.id;
+UPDATE chat_messages m JOIN users u ON u.username = m.receiver SET m.receiver_id = u.id;
+DROP INDEX idx_chat_messages_conversation ON chat_messages;
+DROP INDEX idx_chat_messages_conversation_changes ON chat_messages;
+DROP INDEX idx_chat_messages_inbox ON chat_messages;
+ALTER TABLE chat_messages DROP COLUMN sender;
+ALTER TABLE chat_messages DROP COLUMN receiver;
+ALTER TABLE chat_messages DROP COLUMN status;
+CREATE INDEX idx_chat_messages_conversation ON chat_messages (sender_id, receiver_id, deleted);
+CREATE INDEX idx_chat_messages_conversation_changes ON chat_messages (sender_id, receiver_id, updated_at);
+CREATE INDEX idx_chat_messages_inbox ON chat_messages (receiver_id, sender_id, id, deleted);
+
+-- public_messages
+ALTER TABLE public_messages ADD COLUMN sender_id INT NULL;
+UPDATE public_messages p JOIN users u ON u.username = p.sender SET p.sender_id = u.id;
+ALTER TABLE public_messages DROP COLUMN sender;
+
+-- message_interactions
+ALTER TABLE message_interactions ADD COLUMN user_id INT NULL;
+ALTER TABLE message_interactions ADD COLUMN type_code TINYINT NOT NULL DEFAULT 1;
+UPDATE message_interactions i JOIN users u ON u.username = i.user SET i.user_id = u.id;
+UPDATE message_interactions SET type_code = IF(type = 'like', 1, 2);
+DROP INDEX idx_interactions_message_type_user ON message_interactions;
+DROP INDEX idx_interactions_message_type_time ON message_interactions;
+ALTER TABLE message_interactions DROP COLUMN user;
+ALTER TABLE message_interactions DROP COLUMN type;
+ALTER TABLE message_interactions CHANGE COLUMN type_code type TINYINT NOT NULL DEFAULT 1;
+CREATE INDEX idx_interactions_message_type_user ON message_interactions (message_id, type, user_id);
+CREATE INDEX idx_interactions_message_type_time ON message_interactions (message_id, type, timestamp);
+
+-- conversation_read_cursor and conversation_summary are derived data: rebuild them keyed by ids.
+CREATE TABLE IF NOT EXISTS conversation_read_cursor_ids (
+    user_id      INT       NOT NULL,
+    peer_id      INT       NOT NULL,
+    last_read_id INT       NOT NULL DEFAULT 0,
+    updated_at   TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    PRIMARY KEY (user_id, peer_id)
+);
+INSERT INTO conversation_read_cursor_ids (user_id, peer_id, last_read_id, updated_at)
+SELECT u.id, p.id, c.last_read_id, c.updated_at
+FROM conversation_read_cursor c
+JOIN users u ON u.username = c.user
+JOIN users p ON p.username = c.peer;
+DROP TABLE conversation_read_cursor;
+RENAME TABLE conversation_read_cursor_ids TO conversation_read_cursor;
+
+CREATE TABLE IF NOT EXISTS conversation_summary_ids (
+    user_id         INT          NOT NULL,
+    peer_id         INT          NOT NULL,
+    last_message_id INT          NOT NULL DEFAULT 0,
+    last_sender_id  INT          NULL,
+    preview         VARCHAR(100) NULL,
+    last_at         TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    unread_count    INT          NOT NULL DEFAULT 0,
+    PRIMARY KEY (user_id, peer_id),
+    INDEX idx_conversation_summary_recent (user_id, last_at)
+);
+INSERT INTO conversation_summary_ids (user_id, peer_id, last_message_id, last_sender_id, preview, last_at, unread_count)
+SELECT u.id, p.id, s.last_message_id, ls.id, s.preview, s.last_at, s.unread_count
+FROM conversation_summary s
+JOIN users u ON u.username = s.user
+JOIN users p ON p.username = s.peer
+LEFT JOIN users ls ON ls.username = s.last_sender;
+DROP TABLE conversation_summary;
+RENAME TABLE conversation_summary_ids TO conversation_summary;
+
+-- chat_events
+ALTER TABLE chat_events ADD COLUMN actor_id INT NULL;
+ALTER TABLE chat_events ADD COLUMN target_id INT NULL;
+UPDATE chat_events e JOIN users u ON u.username = e.actor SET e.actor_id = u.id;
+UPDATE chat_events e JOIN users u ON u.username = e.target SET e.target_id = u.id;
+ALTER TABLE chat_events DROP COLUMN actor;
+ALTER TABLE chat_events DROP COLUMN target;
+
+-- push_sessions: tokens are short-lived, so rebuild it keyed by ids like the derived tables.
+CREATE TABLE IF NOT EXISTS push_sessions_ids (
+    token_hash BINARY(32) PRIMARY KEY,
+    user_id    INT        NOT NULL,
+    expires_at TIMESTAMP  NOT NULL,
+    INDEX idx_push_sessions_user (user_id, expires_at)
+);
+INSERT INTO push_sessions_ids (token_hash, user_id, expires_at)
+SELECT s.token_hash, u.id, s.expires_at
+FROM push_sessions s
+JOIN users u ON u.username = s.username;
+DROP TABLE push_sessions;
+RENAME TABLE push_sessions_ids TO push_sessions;
+
+-- Foreign keys: a write with an id that is not a user fails instead of storing an orphan.
+-- Per-user derived rows go with the user; history keeps its rows with a NULL id.
+ALTER TABLE friends ADD CONSTRAINT fk_friends_user FOREIGN KEY (user_id) REFERENCES users (id) ON DELETE CASCADE;
+ALTER TABLE friends ADD CONSTRAINT fk_friends_friend FOREIGN KEY (friend_id) REFERENCES users (id) ON DELETE CASCADE;
+ALTER TABLE chat_messages ADD CONSTRAINT fk_chat_messages_sender FOREIGN KEY (sender_id) REFERENCES users (id) ON DELETE SET NULL;
+ALTER TABLE chat_messages ADD CONSTRAINT fk_chat_messages_receiver FOREIGN KEY (receiver_id) REFERENCES users (id) ON DELETE SET NULL;
+ALTER TABLE public_messages ADD CONSTRAINT fk_public_messages_sender FOREIGN KEY (sender_id) REFERENCES users (id) ON DELETE SET NULL;
+ALTER TABLE message_interactions ADD CONSTRAINT fk_interactions_user FOREIGN KEY (user_id) REFERENCES users (id) ON DELETE SET NULL;
+ALTER TABLE conversation_read_cursor ADD CONSTRAINT fk_read_cursor_user FOREIGN KEY (user_id) REFERENCES users (id) ON DELETE CASCADE;
+ALTER TABLE conversation_read_cursor ADD CONSTRAINT fk_read_cursor_peer FOREIGN KEY (peer_id) REFERENCES users (id) ON DELETE CASCADE;
+ALTER TABLE conversation_summary ADD CONSTRAINT fk_summary_user FOREIGN KEY (user_id) REFERENCES users (id) ON DELETE CASCADE;
+ALTER TABLE conversation_summary ADD CONSTRAINT fk_summary_peer FOREIGN KEY (peer_id) REFERENCES users (id) ON DELETE CASCADE;
+ALTER TABLE conversation_summary ADD CONSTRAINT fk_summary_last_sender FOREIGN KEY (last_sender_id) REFERENCES users (id) ON DELETE SET NULL;
+ALTER TABLE chat_events ADD CONSTRAINT fk_chat_events_actor FOREIGN KEY (actor_id) REFERENCES users (id) ON DELETE SET NULL;
+ALTER TABLE chat_events ADD CONSTRAINT fk_chat_events_target FOREIGN KEY (target_id) REFERENCES users (id) ON DELETE SET NULL;
+ALTER TABLE push_sessions ADD CONSTRAINT fk_push_sessions_user FOREIGN KEY (user_id) REFERENCES users (id) ON DELETE CASCADE;
@@ -0,0 +1,9 @@
+-- Client-generated, time-ordered message ids (see MessageIds). The sending client picks the id
+-- before the insert, and the pair (sender_id, client_id) is unique, so a send that is retried
+-- after a timeout finds its earlier row instead of inserting a second one. Rows from before this
+-- migration keep a NULL client_id, which the unique index allows any number of times.
+ALTER TABLE public_messages ADD COLUMN client_id BIGINT NULL;
+CREATE UNIQUE INDEX uq_public_messages_client ON public_messages (sender_id, client_id);
+
+ALTER TABLE chat_messages ADD COLUMN client_id BIGINT NULL;
+CREATE UNIQUE INDEX uq_chat_messages_client ON chat_messages (sender_id, client_id);
@@ -0,0 +1,12 @@
+-- Node ids for MessageIds. Each running client leases one of the 1024 node ids for a while and
+-- keeps renewing it, so two processes (e.g. the same user logged in on two machines) never
+-- generate ids from the same node, and a retried send cannot be matched to another message's row.
+CREATE TABLE IF NOT EXISTS client_nodes (
+    node_id      SMALLINT  PRIMARY KEY,
+    leased_until TIMESTAMP NOT NULL
+);
+
+-- 32 x 32 rows, which stays under the default cte_max_recursion_depth of 1000.
+INSERT IGNORE INTO client_nodes (node_id, leased_until)
+WITH RECURSIVE digits (n) AS (SELECT 0 UNION ALL SELECT n + 1 FROM digits WHERE n < 31)
+SELECT hi.n * 32 + lo.n, '1970-01-01 00:00:01' FROM digits hi CROSS JOIN digits lo;
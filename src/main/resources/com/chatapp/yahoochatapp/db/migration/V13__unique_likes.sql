@@ -0,0 +1,26 @@
+-- At most one like per user and message. The old "already liked" check ran outside the insert's
+-- transaction, so a double click or a second window could store two like rows and bump
+-- like_count twice. Comments stay unrestricted: the key only covers rows of type 1 (like).
+
+-- Keep one like per (message, user), the earliest, and recount the messages that had duplicates.
+CREATE TABLE IF NOT EXISTS duplicate_likes AS
+SELECT message_id, user_id, MIN(timestamp) AS timestamp
+FROM message_interactions
+WHERE type = 1 AND user_id IS NOT NULL
+GROUP BY message_id, user_id
+HAVING COUNT(*) > 1;
+DELETE i FROM message_interactions i
+JOIN duplicate_likes d ON d.message_id = i.message_id AND d.user_id = i.user_id
+WHERE i.type = 1;
+INSERT INTO message_interactions (message_id, user_id, type, timestamp)
+SELECT message_id, user_id, 1, timestamp FROM duplicate_likes;
+UPDATE public_messages p
+    JOIN (SELECT i.message_id, COUNT(*) AS likes
+          FROM message_interactions i JOIN (SELECT DISTINCT message_id FROM duplicate_likes) d ON d.message_id = i.message_id
+          WHERE i.type = 1 GROUP BY i.message_id) c ON c.message_id = p.id
+SET p.like_count = c.likes;
+DROP TABLE duplicate_likes;
+
+-- NULL for comments, which a unique index never compares.
+ALTER TABLE message_interactions ADD COLUMN like_user_id INT AS (IF(type = 1, user_id, NULL)) VIRTUAL;
+CREATE UNIQUE INDEX uq_interactions_like ON message_interactions (message_id, like_user_id);
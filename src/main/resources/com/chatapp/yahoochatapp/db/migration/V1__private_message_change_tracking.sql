@@ -0,0 +1,4 @@
+-- Lets private chat windows fetch only rows that are new or changed since their last refresh.
+-- updated_at moves on every edit, status change or (soft) delete; deleted rows stay as tombstones.
+ALTER TABLE chat_messages ADD COLUMN updated_at TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3);
+ALTER TABLE chat_messages ADD COLUMN deleted TINYINT(1) NOT NULL DEFAULT 0;
@@ -0,0 +1,9 @@
+-- Push-server sessions. A successful password check issues a random token; the client presents
+-- it in its HELLO frame and the chat server only subscribes a socket whose token is found here
+-- and has not expired. Only a SHA-256 hash of the token is stored.
+CREATE TABLE IF NOT EXISTS push_sessions (
+    token_hash BINARY(32)   PRIMARY KEY,
+    username   VARCHAR(255) NOT NULL,
+    expires_at TIMESTAMP    NOT NULL,
+    INDEX idx_push_sessions_user (username, expires_at)
+);
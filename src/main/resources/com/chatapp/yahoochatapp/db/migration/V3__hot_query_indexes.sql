@@ -0,0 +1,20 @@
+-- Composite indexes for the queries that run on every refresh, render or push.
+-- InnoDB secondary indexes carry the primary key, so (..., id) orderings come for free.
+
+-- Conversation load / delta sync and "mark as seen": sender + receiver equality, then status or updated_at.
+CREATE INDEX idx_chat_messages_conversation ON chat_messages (sender, receiver, status, deleted);
+CREATE INDEX idx_chat_messages_conversation_changes ON chat_messages (sender, receiver, updated_at);
+
+-- Unread badges: receiver + status + deleted filter, grouped by sender, answered from the index alone.
+CREATE INDEX idx_chat_messages_unread ON chat_messages (receiver, status, deleted, sender);
+
+-- Like counts / "liked by me" (covering) and ordered comment lists per message.
+CREATE INDEX idx_interactions_message_type_user ON message_interactions (message_id, type, user);
+CREATE INDEX idx_interactions_message_type_time ON message_interactions (message_id, type, timestamp);
+
+-- Friend list (user = ? OR friend = ?) via index merge, pending requests, and pair lookups.
+CREATE INDEX idx_friends_user_friend_status ON friends (user, friend, status);
+CREATE INDEX idx_friends_friend_status_user ON friends (friend, status, user);
+
+-- Keyset pagination of the public history: ORDER BY timestamp, id.
+CREATE INDEX idx_public_messages_timestamp ON public_messages (timestamp, id);
@@ -0,0 +1,11 @@
+-- Like and comment totals kept on the message row, so rendering a bubble reads two integers
+-- instead of counting interaction rows. Writers bump them in the same transaction as the
+-- interaction insert; InteractionCounterReconciler repairs any drift.
+ALTER TABLE public_messages ADD COLUMN like_count INT NOT NULL DEFAULT 0;
+ALTER TABLE public_messages ADD COLUMN comment_count INT NOT NULL DEFAULT 0;
+
+-- Backfill from the existing interactions.
+UPDATE public_messages p
+    JOIN (SELECT message_id, SUM(type = 'like') AS likes, SUM(type = 'comment') AS comments
+          FROM message_interactions GROUP BY message_id) i ON i.message_id = p.id
+SET p.like_count = i.likes, p.comment_count = i.comments;
@@ -0,0 +1,10 @@
+-- One row per (user, friend) pair, so friend requests and adds can be single-statement
+-- INSERT IGNOREs instead of check-then-insert round trips.
+
+-- Copy into a table with the unique key, keeping the accepted row when a pair was stored twice.
+CREATE TABLE friends_dedup LIKE friends;
+ALTER TABLE friends_dedup ADD UNIQUE KEY uq_friends_pair (user, friend);
+INSERT IGNORE INTO friends_dedup SELECT * FROM friends ORDER BY status = 'Accepted' DESC;
+
+RENAME TABLE friends TO friends_before_dedup, friends_dedup TO friends;
+DROP TABLE friends_before_dedup;
@@ -0,0 +1,14 @@
+-- Append-only change log. Every write to messages, interactions, friends and read status adds
+-- a row in the same transaction, so a client polling "id > last seen id" learns about every
+-- change, and an idle client's poll is one empty primary-key range probe.
+CREATE TABLE IF NOT EXISTS chat_events (
+    id         BIGINT AUTO_INCREMENT PRIMARY KEY,
+    type       VARCHAR(32)  NOT NULL,
+    ref_id     INT          NULL,     -- message id, when the event is about a message
+    actor      VARCHAR(255) NOT NULL, -- user who made the change (sender for message rows)
+    target     VARCHAR(255) NULL,     -- other user: private receiver, befriended user, ...
+    created_at TIMESTAMP    NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Pruning old events by age.
+CREATE INDEX idx_chat_events_created_at ON chat_events (created_at);
@@ -0,0 +1,21 @@
+-- Read state per conversation instead of a status flag on every message: marking a
+-- conversation read is one upsert, and unread = messages above the cursor.
+CREATE TABLE IF NOT EXISTS conversation_read_cursor (
+    user         VARCHAR(255) NOT NULL, -- reader
+    peer         VARCHAR(255) NOT NULL, -- the other side of the conversation
+    last_read_id INT          NOT NULL DEFAULT 0,
+    updated_at   TIMESTAMP    NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    PRIMARY KEY (user, peer)
+);
+
+-- One cursor per existing conversation, at the newest message already marked Seen.
+INSERT IGNORE INTO conversation_read_cursor (user, peer, last_read_id)
+SELECT receiver, sender, COALESCE(MAX(CASE WHEN status = 'Seen' THEN id END), 0)
+FROM chat_messages
+GROUP BY receiver, sender;
+
+-- Unread count per conversation: a range on (receiver, sender, id > cursor), deleted read from the index.
+CREATE INDEX idx_chat_messages_inbox ON chat_messages (receiver, sender, id, deleted);
+
+-- The status-based unread index is no longer used by any query.
+DROP INDEX idx_chat_messages_unread ON chat_messages;
@@ -0,0 +1,33 @@
+-- One row per (user, peer) with what the inbox shows: last message, preview, recency and unread
+-- count. Kept up to date by every private send, read, edit and delete, so the friends list never
+-- touches chat_messages.
+CREATE TABLE IF NOT EXISTS conversation_summary (
+    user            VARCHAR(255) NOT NULL,
+    peer            VARCHAR(255) NOT NULL,
+    last_message_id INT          NOT NULL DEFAULT 0,
+    last_sender     VARCHAR(255) NULL,
+    preview         VARCHAR(100) NULL,
+    last_at         TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    unread_count    INT          NOT NULL DEFAULT 0,
+    PRIMARY KEY (user, peer)
+);
+
+-- Both sides of every existing conversation, at its newest remaining message.
+-- updated_at stands in for the send time of old rows.
+INSERT IGNORE INTO conversation_summary (user, peer, last_message_id, last_sender, preview, last_at)
+SELECT pairs.user, pairs.peer, m.id, m.sender, LEFT(m.message, 100), m.updated_at
+FROM (SELECT user, peer, MAX(id) AS last_id
+      FROM (SELECT sender AS user, receiver AS peer, id FROM chat_messages WHERE deleted = 0
+            UNION ALL
+            SELECT receiver AS user, sender AS peer, id FROM chat_messages WHERE deleted = 0) AS both_sides
+      GROUP BY user, peer) AS pairs
+JOIN chat_messages m ON m.id = pairs.last_id;
+
+-- Unread counts from the read cursors.
+UPDATE conversation_summary s
+JOIN conversation_read_cursor c ON c.user = s.user AND c.peer = s.peer
+SET s.unread_count = (SELECT COUNT(*) FROM chat_messages m
+                      WHERE m.receiver = s.user AND m.sender = s.peer AND m.id > c.last_read_id AND m.deleted = 0);
+
+-- Inbox ordered by recent activity.
+CREATE INDEX idx_conversation_summary_recent ON conversation_summary (user, last_at);
@@ -0,0 +1,5 @@
+-- Row versions for compare-and-set edits and deletes: a write names the primary key and the
+-- version it was based on, so it is one primary-key update and a concurrent change makes it
+-- match no row instead of silently overwriting.
+ALTER TABLE chat_messages ADD COLUMN version INT NOT NULL DEFAULT 0;
+ALTER TABLE public_messages ADD COLUMN version INT NOT NULL DEFAULT 0;